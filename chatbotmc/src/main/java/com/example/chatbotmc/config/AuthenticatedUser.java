@@ -0,0 +1,11 @@
+package com.example.chatbotmc.config;
+
+/**
+ * Principal built from a verified JWT
+ * Controllers receive it with @AuthenticationPrincipal instead of re-parsing the token.
+ */
+public record AuthenticatedUser(
+    Long userId,
+    String username,
+    String role
+) {}
@@ -0,0 +1,25 @@
+package com.example.chatbotmc.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Threads for background conversation summarization (chat.memory.enabled)
+ * Each run blocks on an LLM call for seconds, so it gets a small bounded scheduler of its own
+ * instead of tying up the shared task executor.
+ */
+@Configuration
+public class ConversationMemoryConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler conversationSummaryScheduler(
+            @Value("${chat.memory.summary-threads:2}") int threads,
+            @Value("${chat.memory.summary-queue-size:100}") int queueSize
+    ) {
+        // A full queue only delays summaries: the conversation is scheduled again on its next turn
+        return Schedulers.newBoundedElastic(Math.max(1, threads), Math.max(1, queueSize), "chat-summary");
+    }
+}
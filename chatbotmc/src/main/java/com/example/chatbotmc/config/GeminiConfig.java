@@ -1,17 +1,132 @@
 package com.example.chatbotmc.config;
 
+import com.example.chatbotmc.llm.gemini.GeminiCallPolicy;
+import com.example.chatbotmc.util.CircuitBreaker;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+
+/**
+ * WebClient shared by GeminiLlmClient and EmbeddingService
+ * Uses a dedicated, bounded connection pool (gemini.http.*) so bursts reuse warm TLS
+ * connections: most recently used connections are handed out first, idle ones are closed
+ * in the background before Google's side drops them, and callers beyond the pool wait in
+ * a bounded queue instead of piling up.
+ *
+ * Generation and embedding calls additionally go through their own GeminiCallPolicy
+ * (gemini.resilience.*): timeout, bulkhead, retry and circuit breaker. They are separate so
+ * a struggling embedding endpoint does not trip the breaker for chat generation.
+ */
 @Configuration
 public class GeminiConfig {
 
+    @Value("${gemini.resilience.circuit.failure-rate-threshold:50}")
+    private double failureRateThreshold;
+
+    @Value("${gemini.resilience.circuit.window-size:20}")
+    private int circuitWindowSize;
+
+    @Value("${gemini.resilience.circuit.minimum-calls:10}")
+    private int circuitMinimumCalls;
+
+    @Value("${gemini.resilience.circuit.open-duration:30s}")
+    private Duration circuitOpenDuration;
+
+    @Value("${gemini.resilience.circuit.half-open-calls:3}")
+    private int circuitHalfOpenCalls;
+
+    @Value("${gemini.resilience.retry.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${gemini.resilience.retry.initial-backoff:500ms}")
+    private Duration initialBackoff;
+
+    @Value("${gemini.resilience.retry.max-backoff:5s}")
+    private Duration maxBackoff;
+
+    @Bean
+    public GeminiConnectionPoolMetrics geminiConnectionPoolMetrics() {
+        return new GeminiConnectionPoolMetrics();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider geminiConnectionProvider(
+            GeminiConnectionPoolMetrics poolMetrics,
+            @Value("${gemini.http.max-connections:100}") int maxConnections,
+            @Value("${gemini.http.pending-acquire-max-count:250}") int pendingAcquireMaxCount,
+            @Value("${gemini.http.pending-acquire-timeout:10s}") Duration pendingAcquireTimeout,
+            @Value("${gemini.http.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${gemini.http.max-life-time:10m}") Duration maxLifeTime,
+            @Value("${gemini.http.evict-interval:15s}") Duration evictInterval
+    ) {
+        return ConnectionProvider.builder("gemini")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                // Reuse the warmest connection; surplus ones go idle and get evicted
+                .lifo()
+                .metrics(true, () -> poolMetrics)
+                .build();
+    }
+
+    @Bean
+    public GeminiCallPolicy geminiGenerationPolicy(
+            @Value("${gemini.resilience.generation.timeout:60s}") Duration timeout,
+            @Value("${gemini.resilience.generation.max-concurrent:300}") int maxConcurrent
+    ) {
+        return callPolicy("generation", timeout, maxConcurrent);
+    }
+
     @Bean
-    public WebClient geminiWebClient() {
+    public GeminiCallPolicy geminiEmbeddingPolicy(
+            @Value("${gemini.resilience.embedding.timeout:10s}") Duration timeout,
+            @Value("${gemini.resilience.embedding.max-concurrent:50}") int maxConcurrent
+    ) {
+        return callPolicy("embedding", timeout, maxConcurrent);
+    }
+
+    private GeminiCallPolicy callPolicy(String name, Duration timeout, int maxConcurrent) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(failureRateThreshold, circuitWindowSize,
+                circuitMinimumCalls, circuitOpenDuration, circuitHalfOpenCalls);
+        return new GeminiCallPolicy(name, timeout, maxConcurrent, circuitBreaker, maxRetries, initialBackoff, maxBackoff);
+    }
+
+    @Bean
+    public WebClient geminiWebClient(
+            ConnectionProvider geminiConnectionProvider,
+            @Value("${gemini.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${gemini.http.response-timeout:60s}") Duration responseTimeout,
+            @Value("${gemini.http.http2:false}") boolean http2,
+            @Value("${gemini.http.max-in-memory-size:16MB}") DataSize maxInMemorySize
+    ) {
+        HttpClient httpClient = HttpClient.create(geminiConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                // Longest gap between reads of a response, so it also bounds each streamed chunk
+                .responseTimeout(responseTimeout);
+        
+        if (http2) {
+            // Negotiated via ALPN, falls back to HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        
         return WebClient.builder()
                 .baseUrl("https://generativelanguage.googleapis.com/")
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                // A full batchEmbedContents response (100 x 768 floats) exceeds the 256 KB default
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxInMemorySize.toBytes()))
                 .build();
     }
 }
-
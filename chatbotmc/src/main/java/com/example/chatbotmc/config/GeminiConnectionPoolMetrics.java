@@ -0,0 +1,51 @@
+package com.example.chatbotmc.config;
+
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live gauges of the Gemini connection pool, without a metrics library
+ * Reactor Netty keeps one pool per remote address and registers each one here when it is
+ * created; snapshot() reads the current values.
+ */
+public class GeminiConnectionPoolMetrics implements ConnectionProvider.MeterRegistrar {
+
+    private final Map<SocketAddress, ConnectionPoolMetrics> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        pools.put(remoteAddress, metrics);
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(remoteAddress);
+    }
+
+    /**
+     * Current gauges per remote address
+     */
+    public Map<String, PoolStats> snapshot() {
+        Map<String, PoolStats> snapshot = new LinkedHashMap<>();
+        pools.forEach((address, metrics) -> snapshot.put(address.toString(), new PoolStats(
+            metrics.acquiredSize(),
+            metrics.idleSize(),
+            metrics.allocatedSize(),
+            metrics.maxAllocatedSize(),
+            metrics.pendingAcquireSize(),
+            metrics.maxPendingAcquireSize()
+        )));
+        return snapshot;
+    }
+
+    /**
+     * Connections in use, idle and open, plus requests waiting for a connection
+     */
+    public record PoolStats(int acquired, int idle, int allocated, int maxConnections,
+                            int pendingAcquire, int maxPendingAcquire) {}
+}
@@ -41,22 +41,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String token = authHeader.substring(7);
         
         try {
-            if (jwtService.validateToken(token)) {
-                String username = jwtService.extractUsername(token);
-                String role = jwtService.extractRole(token);
-                
-                // Use the actual role from the JWT token
-                String authority = "ROLE_" + (role != null ? role : "USER");
-                
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        username,
-                        null,
-                        Collections.singletonList(new SimpleGrantedAuthority(authority))
-                );
-                
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-            }
+            // Verified once here; controllers read the claims from the principal
+            AuthenticatedUser user = jwtService.parseToken(token);
+            
+            // Use the actual role from the JWT token
+            String authority = "ROLE_" + (user.role() != null ? user.role() : "USER");
+            
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    user,
+                    null,
+                    Collections.singletonList(new SimpleGrantedAuthority(authority))
+            );
+            
+            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
         } catch (Exception e) {
             // Invalid token - just continue without authentication
             logger.warn("JWT validation failed: " + e.getMessage());
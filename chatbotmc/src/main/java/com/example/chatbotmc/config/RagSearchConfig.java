@@ -0,0 +1,25 @@
+package com.example.chatbotmc.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Threads for the full-text leg of hybrid retrieval (rag.hybrid.enabled)
+ * Each search holds a JDBC connection, so they get their own bounded scheduler sized to the
+ * connection pool instead of the shared task executor.
+ */
+@Configuration
+public class RagSearchConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler fullTextSearchScheduler(
+            @Value("${rag.hybrid.full-text-threads:10}") int threads,
+            @Value("${rag.hybrid.full-text-queue-size:100}") int queueSize
+    ) {
+        // More threads than pooled connections would only wait on the pool
+        return Schedulers.newBoundedElastic(Math.max(1, threads), Math.max(1, queueSize), "rag-full-text");
+    }
+}
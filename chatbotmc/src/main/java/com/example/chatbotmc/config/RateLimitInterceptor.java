@@ -1,28 +1,38 @@
 package com.example.chatbotmc.config;
 
+import com.example.chatbotmc.util.BoundedCache;
+import com.example.chatbotmc.util.SegmentedCache;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Rate limiting interceptor to prevent API abuse
  * Limits requests per IP address using token bucket algorithm
  * Stricter limits for authentication endpoints to prevent brute force attacks
+ * 
+ * Buckets live in bounded stores so a flood of distinct (or spoofed) client IPs cannot
+ * grow the heap. A bucket left idle longer than its refill period is full again anyway,
+ * so expiring it after rate-limit.idle-expiry-minutes loses no limiting state. Under
+ * extreme churn the least recently used clients are evicted first.
  */
 @Component
 public class RateLimitInterceptor implements HandlerInterceptor {
     
-    // Separate caches for different rate limit tiers
-    private final Map<String, Bucket> generalCache = new ConcurrentHashMap<>();
-    private final Map<String, Bucket> authCache = new ConcurrentHashMap<>();
+    // Lock striping for the per-request bucket lookup
+    private static final int STORE_SEGMENTS = 64;
+    
+    // Separate stores for different rate limit tiers
+    private final SegmentedCache<String, Bucket> generalCache;
+    private final SegmentedCache<String, Bucket> authCache;
     
     // Default: 100 requests per minute per IP
     private static final int REQUESTS_PER_MINUTE = 100;
@@ -30,8 +40,23 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     // Auth endpoints: 1 request per minute per IP (stricter to prevent brute force)
     private static final int AUTH_REQUESTS_PER_MINUTE = 1;
     
+    public RateLimitInterceptor(
+            @Value("${rate-limit.max-clients:100000}") int maxClients,
+            @Value("${rate-limit.idle-expiry-minutes:5}") long idleExpiryMinutes
+    ) {
+        Duration idleExpiry = Duration.ofMinutes(idleExpiryMinutes);
+        int storeSize = Math.max(maxClients, STORE_SEGMENTS);
+        this.generalCache = new SegmentedCache<>(STORE_SEGMENTS, storeSize, idleExpiry, true);
+        this.authCache = new SegmentedCache<>(STORE_SEGMENTS, storeSize, idleExpiry, true);
+    }
+    
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // Streaming responses are re-dispatched when they complete; the request was already counted
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        
         String clientIP = getClientIP(request);
         String requestURI = request.getRequestURI();
         
@@ -55,8 +80,7 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     }
     
     private boolean handleAuthRateLimit(String clientIP, HttpServletResponse response) throws Exception {
-        String key = "auth:" + clientIP;
-        Bucket bucket = authCache.computeIfAbsent(key, k -> createAuthBucket());
+        Bucket bucket = authCache.computeIfAbsent(clientIP, k -> createAuthBucket());
         
         if (bucket.tryConsume(1)) {
             return true;
@@ -81,6 +105,20 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         }
     }
     
+    /**
+     * Live buckets and evictions of the general tier
+     */
+    public BoundedCache.Stats getGeneralStoreStats() {
+        return generalCache.stats();
+    }
+    
+    /**
+     * Live buckets and evictions of the authentication tier
+     */
+    public BoundedCache.Stats getAuthStoreStats() {
+        return authCache.stats();
+    }
+    
     private Bucket createGeneralBucket() {
         Bandwidth limit = Bandwidth.builder()
             .capacity(REQUESTS_PER_MINUTE)
@@ -0,0 +1,27 @@
+package com.example.chatbotmc.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Opt-in non-blocking chat path (chat.reactive.enabled)
+ * Gemini calls run on the WebClient event loop; only JPA work needs threads, and it runs
+ * on a dedicated bounded scheduler sized to the connection pool instead of on request threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.reactive.enabled", havingValue = "true")
+public class ReactiveChatConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler chatDbScheduler(
+            @Value("${chat.reactive.db-threads:10}") int threads,
+            @Value("${chat.reactive.db-queue-size:10000}") int queueSize
+    ) {
+        // More threads than pooled connections would only wait on the pool
+        return Schedulers.newBoundedElastic(Math.max(1, threads), Math.max(1, queueSize), "chat-db");
+    }
+}
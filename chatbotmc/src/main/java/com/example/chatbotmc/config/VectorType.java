@@ -1,18 +1,32 @@
 package com.example.chatbotmc.config;
 
-import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import com.example.chatbotmc.llm.Embedding;
+import com.pgvector.PGvector;
+import org.hibernate.type.descriptor.WrapperOptions;
 import org.hibernate.usertype.UserType;
 
 import java.io.Serializable;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Custom Hibernate UserType for PostgreSQL vector type
+ * Maps vector columns to {@link Embedding} and binds them as PGvector objects.
+ * Once the vector type is registered on a connection, pgjdbc sends and receives
+ * vectors in pgvector's binary format instead of formatting/parsing decimal text.
  */
-public class VectorType implements UserType<String> {
+public class VectorType implements UserType<Embedding> {
+
+    // Physical connections that already have the vector type registered
+    private static final Set<Connection> registeredConnections =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
     @Override
     public int getSqlType() {
@@ -20,37 +34,47 @@ public class VectorType implements UserType<String> {
     }
 
     @Override
-    public Class<String> returnedClass() {
-        return String.class;
+    public Class<Embedding> returnedClass() {
+        return Embedding.class;
     }
 
     @Override
-    public boolean equals(String x, String y) {
-        return x == null ? y == null : x.equals(y);
+    public boolean equals(Embedding x, Embedding y) {
+        return Objects.equals(x, y);
     }
 
     @Override
-    public int hashCode(String x) {
-        return x == null ? 0 : x.hashCode();
+    public int hashCode(Embedding x) {
+        return Objects.hashCode(x);
     }
 
     @Override
-    public String nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner) throws SQLException {
-        String value = rs.getString(position);
-        return rs.wasNull() ? null : value;
+    public Embedding nullSafeGet(ResultSet rs, int position, WrapperOptions options) throws SQLException {
+        registerVectorType(rs.getStatement().getConnection());
+
+        Object value = rs.getObject(position);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof PGvector vector) {
+            return new Embedding(vector.toArray());
+        }
+        // Result described before the type was registered on this connection, value arrives as text
+        return new Embedding(new PGvector(rs.getString(position)).toArray());
     }
 
     @Override
-    public void nullSafeSet(PreparedStatement st, String value, int index, SharedSessionContractImplementor session) throws SQLException {
+    public void nullSafeSet(PreparedStatement st, Embedding value, int index, WrapperOptions options) throws SQLException {
         if (value == null) {
             st.setNull(index, Types.OTHER);
         } else {
-            st.setObject(index, value, Types.OTHER);
+            registerVectorType(st.getConnection());
+            st.setObject(index, new PGvector(value.values()));
         }
     }
 
     @Override
-    public String deepCopy(String value) {
+    public Embedding deepCopy(Embedding value) {
         return value;
     }
 
@@ -60,17 +84,30 @@ public class VectorType implements UserType<String> {
     }
 
     @Override
-    public Serializable disassemble(String value) {
-        return value;
+    public Serializable disassemble(Embedding value) {
+        return value == null ? null : value.values().clone();
     }
 
     @Override
-    public String assemble(Serializable cached, Object owner) {
-        return (String) cached;
+    public Embedding assemble(Serializable cached, Object owner) {
+        return cached == null ? null : new Embedding(((float[]) cached).clone());
     }
 
     @Override
-    public String replace(String detached, String managed, Object owner) {
+    public Embedding replace(Embedding detached, Embedding managed, Object owner) {
         return detached;
     }
+
+    /**
+     * Register PGvector on the physical connection (once per connection) so that
+     * pgjdbc enables binary transfer for the vector OID
+     */
+    private static void registerVectorType(Connection connection) throws SQLException {
+        // Unwrap the pool proxy so registration is tracked per physical connection
+        Connection physicalConnection = connection.unwrap(Connection.class);
+        if (!registeredConnections.contains(physicalConnection)) {
+            PGvector.addVectorType(physicalConnection);
+            registeredConnections.add(physicalConnection);
+        }
+    }
 }
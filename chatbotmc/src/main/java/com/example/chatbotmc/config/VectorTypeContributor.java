@@ -0,0 +1,18 @@
+package com.example.chatbotmc.config;
+
+import org.hibernate.boot.model.TypeContributions;
+import org.hibernate.boot.model.TypeContributor;
+import org.hibernate.service.ServiceRegistry;
+
+/**
+ * Registers {@link VectorType} as the basic type for Embedding so that Embedding
+ * values passed as native query parameters are bound through it as well
+ * Loaded via META-INF/services/org.hibernate.boot.model.TypeContributor
+ */
+public class VectorTypeContributor implements TypeContributor {
+
+    @Override
+    public void contribute(TypeContributions typeContributions, ServiceRegistry serviceRegistry) {
+        typeContributions.contributeType(new VectorType());
+    }
+}
@@ -1,12 +1,25 @@
 package com.example.chatbotmc.controller;
 
+import com.example.chatbotmc.config.GeminiConnectionPoolMetrics;
+import com.example.chatbotmc.config.RateLimitInterceptor;
+import com.example.chatbotmc.llm.gemini.GeminiCallPolicy;
+import com.example.chatbotmc.service.ContextAssembler;
+import com.example.chatbotmc.service.EmbeddingService;
+import com.example.chatbotmc.service.LlmService;
 import com.example.chatbotmc.service.RagDataLoader;
 import com.example.chatbotmc.service.RagService;
+import com.example.chatbotmc.service.SemanticAnswerCache;
+import com.example.chatbotmc.service.VectorIndexManager;
+import com.example.chatbotmc.util.BoundedCache;
+import com.example.chatbotmc.util.SingleFlight;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Admin endpoints for managing RAG data and system operations
@@ -19,23 +32,53 @@ public class AdminController {
     
     private final RagDataLoader ragDataLoader;
     private final RagService ragService;
+    private final EmbeddingService embeddingService;
+    private final VectorIndexManager vectorIndexManager;
+    private final SemanticAnswerCache answerCache;
+    private final RateLimitInterceptor rateLimitInterceptor;
+    private final GeminiConnectionPoolMetrics geminiPoolMetrics;
+    private final LlmService llmService;
+    private final List<GeminiCallPolicy> geminiCallPolicies;
+    private final ContextAssembler contextAssembler;
     
-    public AdminController(RagDataLoader ragDataLoader, RagService ragService) {
+    public AdminController(RagDataLoader ragDataLoader,
+                           RagService ragService,
+                           EmbeddingService embeddingService,
+                           VectorIndexManager vectorIndexManager,
+                           SemanticAnswerCache answerCache,
+                           RateLimitInterceptor rateLimitInterceptor,
+                           GeminiConnectionPoolMetrics geminiPoolMetrics,
+                           LlmService llmService,
+                           List<GeminiCallPolicy> geminiCallPolicies,
+                           ContextAssembler contextAssembler) {
         this.ragDataLoader = ragDataLoader;
         this.ragService = ragService;
+        this.embeddingService = embeddingService;
+        this.vectorIndexManager = vectorIndexManager;
+        this.answerCache = answerCache;
+        this.rateLimitInterceptor = rateLimitInterceptor;
+        this.geminiPoolMetrics = geminiPoolMetrics;
+        this.llmService = llmService;
+        this.geminiCallPolicies = geminiCallPolicies;
+        this.contextAssembler = contextAssembler;
     }
     
     /**
      * Manually trigger RAG data loading from data.json
+     * Incremental: only new or edited chunks are re-embedded
      * POST /api/admin/load-rag-data
      */
     @PostMapping("/load-rag-data")
     public ResponseEntity<Map<String, String>> loadRagData() {
         try {
-            ragDataLoader.loadRagData();
+            RagDataLoader.LoadSummary summary = ragDataLoader.loadRagData();
             return ResponseEntity.ok(Map.of(
                 "status", "success",
                 "message", "RAG data loaded successfully",
+                "changes", String.format(
+                    "Added: %d, Updated: %d, Unchanged: %d, Removed: %d, Failed: %d",
+                    summary.added(), summary.updated(), summary.unchanged(), summary.removed(), summary.failed()
+                ),
                 "stats", ragDataLoader.getLoadingStats()
             ));
         } catch (Exception e) {
@@ -46,13 +89,43 @@ public class AdminController {
         }
     }
     
+    /**
+     * Rebuild the vector similarity index with the configured rag.index.* settings
+     * POST /api/admin/rebuild-vector-index
+     */
+    @PostMapping("/rebuild-vector-index")
+    public ResponseEntity<Map<String, String>> rebuildVectorIndex() {
+        try {
+            long start = System.currentTimeMillis();
+            String definition = vectorIndexManager.rebuildIndex();
+            return ResponseEntity.ok(Map.of(
+                "status", "success",
+                "message", "Vector index rebuilt in " + (System.currentTimeMillis() - start) + "ms",
+                "index_type", vectorIndexManager.getIndexType(),
+                "index_definition", definition != null ? definition : "N/A"
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of(
+                "status", "error",
+                "message", e.getMessage()
+            ));
+        }
+    }
+    
     /**
      * Get RAG data loading statistics
      * GET /api/admin/rag-stats
      */
     @GetMapping("/rag-stats")
     public ResponseEntity<?> getRagStats() {
-        RagService.RagStats stats = ragService.getStats();
+        Optional<RagService.RagStats> snapshot = ragService.getStats();
+        if (snapshot.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                "status", "error",
+                "message", "RAG corpus statistics are not available yet, the count is retried in the background"
+            ));
+        }
+        RagService.RagStats stats = snapshot.get();
         
         return ResponseEntity.ok(Map.of(
             "status", "success",
@@ -62,7 +135,135 @@ public class AdminController {
             "chunks_with_embeddings", stats.chunksWithEmbeddings(),
             "default_top_k", stats.defaultTopK(),
             "similarity_threshold", stats.similarityThreshold(),
+            "max_score_drop", stats.maxScoreDrop(),
+            "stats_refreshed_at", stats.refreshedAt(),
             "rag_available", ragService.isRagAvailable()
         ));
     }
+    
+    /**
+     * Get query embedding cache statistics
+     * GET /api/admin/embedding-cache-stats
+     */
+    @GetMapping("/embedding-cache-stats")
+    public ResponseEntity<?> getEmbeddingCacheStats() {
+        BoundedCache.Stats stats = embeddingService.getQueryCacheStats();
+        
+        return ResponseEntity.ok(Map.of(
+            "status", "success",
+            "hits", stats.hits(),
+            "misses", stats.misses(),
+            "evictions", stats.evictions(),
+            "hit_rate", stats.hitRate(),
+            "size", stats.size(),
+            "max_size", stats.maxSize()
+        ));
+    }
+    
+    /**
+     * Get semantic answer cache statistics
+     * GET /api/admin/answer-cache-stats
+     */
+    @GetMapping("/answer-cache-stats")
+    public ResponseEntity<?> getAnswerCacheStats() {
+        BoundedCache.Stats stats = answerCache.stats();
+        
+        return ResponseEntity.ok(Map.of(
+            "status", "success",
+            "enabled", answerCache.isEnabled(),
+            "hits", stats.hits(),
+            "misses", stats.misses(),
+            "evictions", stats.evictions(),
+            "hit_rate", stats.hitRate(),
+            "size", stats.size(),
+            "max_size", stats.maxSize()
+        ));
+    }
+    
+    /**
+     * Get rate limit bucket store statistics
+     * GET /api/admin/rate-limit-stats
+     */
+    @GetMapping("/rate-limit-stats")
+    public ResponseEntity<?> getRateLimitStats() {
+        return ResponseEntity.ok(Map.of(
+            "status", "success",
+            "general", rateLimitStoreStats(rateLimitInterceptor.getGeneralStoreStats()),
+            "auth", rateLimitStoreStats(rateLimitInterceptor.getAuthStoreStats())
+        ));
+    }
+    
+    /**
+     * Get Gemini HTTP connection pool statistics, per remote address
+     * GET /api/admin/gemini-pool-stats
+     */
+    @GetMapping("/gemini-pool-stats")
+    public ResponseEntity<?> getGeminiPoolStats() {
+        return ResponseEntity.ok(Map.of(
+            "status", "success",
+            "pools", geminiPoolMetrics.snapshot()
+        ));
+    }
+    
+    /**
+     * Get circuit breaker, bulkhead, timeout and retry statistics of the Gemini call policies
+     * GET /api/admin/gemini-resilience-stats
+     */
+    @GetMapping("/gemini-resilience-stats")
+    public ResponseEntity<?> getGeminiResilienceStats() {
+        return ResponseEntity.ok(Map.of(
+            "status", "success",
+            "policies", geminiCallPolicies.stream().map(GeminiCallPolicy::stats).toList()
+        ));
+    }
+    
+    /**
+     * Get counts of identical in-flight Gemini calls that were collapsed into one
+     * GET /api/admin/coalescing-stats
+     */
+    @GetMapping("/coalescing-stats")
+    public ResponseEntity<?> getCoalescingStats() {
+        return ResponseEntity.ok(Map.of(
+            "status", "success",
+            "query_embeddings", coalescingStats(embeddingService.getQueryCoalescingStats()),
+            "generations", coalescingStats(llmService.getGenerationCoalescingStats())
+        ));
+    }
+    
+    /**
+     * Get token usage of the assembled RAG context
+     * GET /api/admin/context-stats
+     */
+    @GetMapping("/context-stats")
+    public ResponseEntity<?> getContextStats() {
+        ContextAssembler.ContextStats stats = contextAssembler.stats();
+        
+        return ResponseEntity.ok(Map.of(
+            "status", "success",
+            "max_tokens", stats.maxTokens(),
+            "assembled_prompts", stats.assemblies(),
+            "average_tokens", stats.averageTokens(),
+            "peak_tokens", stats.peakTokens(),
+            "truncated_chunks", stats.truncatedChunks(),
+            "duplicate_chunks", stats.duplicateChunks(),
+            "over_budget_chunks", stats.overBudgetChunks()
+        ));
+    }
+    
+    private Map<String, Object> coalescingStats(SingleFlight.Stats stats) {
+        return Map.of(
+            "calls", stats.calls(),
+            "collapsed", stats.collapsed(),
+            "collapse_rate", stats.collapseRate(),
+            "in_flight", stats.inFlight()
+        );
+    }
+    
+    private Map<String, Object> rateLimitStoreStats(BoundedCache.Stats stats) {
+        return Map.of(
+            "live_buckets", stats.size(),
+            "max_buckets", stats.maxSize(),
+            "evictions", stats.evictions()
+        );
+    }
 }
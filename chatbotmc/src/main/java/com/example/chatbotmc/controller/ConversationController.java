@@ -1,13 +1,13 @@
 package com.example.chatbotmc.controller;
 
+import com.example.chatbotmc.config.AuthenticatedUser;
 import com.example.chatbotmc.dto.ChatMessageDTO;
 import com.example.chatbotmc.dto.ConversationDTO;
+import com.example.chatbotmc.dto.MessagePageDTO;
 import com.example.chatbotmc.service.ConversationService;
-import com.example.chatbotmc.service.JwtService;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 
@@ -16,33 +16,45 @@ import java.util.List;
 public class ConversationController {
     
     private final ConversationService conversationService;
-    private final JwtService jwtService;
     
-    public ConversationController(ConversationService conversationService, JwtService jwtService) {
+    public ConversationController(ConversationService conversationService) {
         this.conversationService = conversationService;
-        this.jwtService = jwtService;
     }
     
     @GetMapping
     public ResponseEntity<List<ConversationDTO>> getUserConversations(
-            @RequestHeader("Authorization") String authHeader) {
-        Long userId = extractUserId(authHeader);
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
         return ResponseEntity.ok(conversationService.getUserConversations(userId));
     }
     
     @GetMapping("/{conversationId}/messages")
     public ResponseEntity<List<ChatMessageDTO>> getConversationMessages(
             @PathVariable Long conversationId,
-            @RequestHeader("Authorization") String authHeader) {
-        Long userId = extractUserId(authHeader);
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
         return ResponseEntity.ok(conversationService.getConversationMessages(conversationId, userId));
     }
     
+    /**
+     * Paginated message history, newest first
+     * GET /api/conversations/{id}/messages/page?limit=50, then pass nextCursor as cursor for older messages
+     */
+    @GetMapping("/{conversationId}/messages/page")
+    public ResponseEntity<MessagePageDTO> getConversationMessagesPage(
+            @PathVariable Long conversationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
+        return ResponseEntity.ok(conversationService.getConversationMessagesPage(conversationId, userId, cursor, limit));
+    }
+    
     @PostMapping
     public ResponseEntity<ConversationDTO> createConversation(
             @RequestBody CreateConversationRequest request,
-            @RequestHeader("Authorization") String authHeader) {
-        Long userId = extractUserId(authHeader);
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
         var conversation = conversationService.createConversation(userId, request.title());
         return ResponseEntity.ok(new ConversationDTO(
             conversation.getId(),
@@ -56,8 +68,8 @@ public class ConversationController {
     @DeleteMapping("/{conversationId}")
     public ResponseEntity<Void> deleteConversation(
             @PathVariable Long conversationId,
-            @RequestHeader("Authorization") String authHeader) {
-        Long userId = extractUserId(authHeader);
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
         conversationService.deleteConversation(conversationId, userId);
         return ResponseEntity.noContent().build();
     }
@@ -66,22 +78,11 @@ public class ConversationController {
     public ResponseEntity<Void> updateTitle(
             @PathVariable Long conversationId,
             @RequestBody UpdateTitleRequest request,
-            @RequestHeader("Authorization") String authHeader) {
-        Long userId = extractUserId(authHeader);
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long userId = user.userId();
         conversationService.updateConversationTitle(conversationId, userId, request.title());
         return ResponseEntity.ok().build();
     }
-    
-    /**
-     * Safely extracts userId from Authorization header with proper validation
-     */
-    private Long extractUserId(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ") || authHeader.length() <= 7) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid authorization header");
-        }
-        String token = authHeader.substring(7);
-        return jwtService.extractUserId(token);
-    }
 }
 
 record CreateConversationRequest(String title) {}
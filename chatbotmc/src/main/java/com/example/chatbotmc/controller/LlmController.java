@@ -1,37 +1,43 @@
 package com.example.chatbotmc.controller;
 
+import com.example.chatbotmc.config.AuthenticatedUser;
 import com.example.chatbotmc.dto.ChatRequest;
 import com.example.chatbotmc.dto.ChatResponse;
-import com.example.chatbotmc.service.JwtService;
+import com.example.chatbotmc.dto.ChatStreamEvent;
 import com.example.chatbotmc.service.LlmService;
 import com.example.chatbotmc.service.UserService;
 import jakarta.validation.Valid;
-import org.springframework.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/llm")
 public class LlmController {
 
+    private static final Logger logger = LoggerFactory.getLogger(LlmController.class);
+
     private final LlmService llmService;
-    private final JwtService jwtService;
     private final UserService userService;
 
-    public LlmController(LlmService llmService, JwtService jwtService, UserService userService) {
+    public LlmController(LlmService llmService, UserService userService) {
         this.llmService = llmService;
-        this.jwtService = jwtService;
         this.userService = userService;
     }
 
     @PostMapping("/chat")
     public ResponseEntity<ChatResponse> chat(
             @Valid @RequestBody ChatRequest request,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser user) {
         
-        // Extract userId from JWT token with validation
-        Long userId = extractUserIdFromHeader(authHeader);
+        Long userId = user.userId();
         
         // Check and increment query count
         userService.incrementQueryCount(userId);
@@ -40,27 +46,47 @@ public class LlmController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Same as /chat, but streams the answer as server-sent events
+     * "delta" events carry text chunks as they arrive, then one "done" event carries the
+     * saved ChatResponse. A failure mid-stream ends it with an "error" event.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> chatStream(
+            @Valid @RequestBody ChatRequest request,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        
+        Long userId = user.userId();
+        
+        userService.incrementQueryCount(userId);
+        
+        return llmService.streamChatWithHistory(userId, request.prompt(), request.conversationId())
+                .map(this::toServerSentEvent)
+                .onErrorResume(e -> {
+                    logger.error("Chat stream failed: {}", e.getMessage(), e);
+                    return Flux.just(ServerSentEvent.builder()
+                            .event("error")
+                            .data(Map.of("message", "Failed to generate response"))
+                            .build());
+                });
+    }
+    
+    private ServerSentEvent<Object> toServerSentEvent(ChatStreamEvent event) {
+        if (event.isDone()) {
+            return ServerSentEvent.builder().event("done").data(event.done()).build();
+        }
+        return ServerSentEvent.builder().event("delta").data(event.delta()).build();
+    }
+    
     @GetMapping("/remaining-queries")
     public ResponseEntity<RemainingQueriesResponse> getRemainingQueries(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser user) {
         
-        // Extract userId from JWT token with validation
-        Long userId = extractUserIdFromHeader(authHeader);
+        Long userId = user.userId();
         
         int remaining = userService.getRemainingQueries(userId);
         return ResponseEntity.ok(new RemainingQueriesResponse(remaining));
     }
     
-    /**
-     * Safely extracts userId from Authorization header with proper validation
-     */
-    private Long extractUserIdFromHeader(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ") || authHeader.length() <= 7) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid authorization header");
-        }
-        String token = authHeader.substring(7);
-        return jwtService.extractUserId(token);
-    }
-    
     private record RemainingQueriesResponse(int remainingQueries) {}
 }
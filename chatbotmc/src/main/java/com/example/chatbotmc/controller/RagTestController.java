@@ -1,8 +1,9 @@
 package com.example.chatbotmc.controller;
 
-import com.example.chatbotmc.entity.RagChunk;
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.llm.Embedding;
 import com.example.chatbotmc.service.EmbeddingService;
-import com.example.chatbotmc.repository.RagChunkRepository;
+import com.example.chatbotmc.service.VectorIndex;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
@@ -12,6 +13,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -28,11 +30,11 @@ import java.util.stream.Collectors;
 public class RagTestController {
     
     private final EmbeddingService embeddingService;
-    private final RagChunkRepository ragChunkRepository;
+    private final VectorIndex vectorIndex;
     
-    public RagTestController(EmbeddingService embeddingService, RagChunkRepository ragChunkRepository) {
+    public RagTestController(EmbeddingService embeddingService, VectorIndex vectorIndex) {
         this.embeddingService = embeddingService;
-        this.ragChunkRepository = ragChunkRepository;
+        this.vectorIndex = vectorIndex;
     }
     
     /**
@@ -42,7 +44,7 @@ public class RagTestController {
     @GetMapping("/embedding")
     public ResponseEntity<?> testEmbedding(
             @RequestParam @Size(min = 1, max = 10000, message = "Text must be between 1 and 10000 characters") String text) {
-        List<Double> embedding = embeddingService.generateEmbedding(text);
+        Embedding embedding = embeddingService.generateEmbedding(text);
         
         if (embedding == null) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -52,9 +54,8 @@ public class RagTestController {
         
         return ResponseEntity.ok(Map.of(
             "text", text,
-            "embedding_dimensions", embedding.size(),
-            "embedding_sample", embedding.subList(0, Math.min(10, embedding.size())),
-            "vector_string", embeddingService.embeddingToVectorString(embedding)
+            "embedding_dimensions", embedding.dimensions(),
+            "embedding_sample", Arrays.copyOf(embedding.values(), Math.min(10, embedding.dimensions()))
         ));
     }
     
@@ -68,7 +69,7 @@ public class RagTestController {
             @RequestParam(defaultValue = "5") @Min(1) @Max(20) int limit
     ) {
         // Generate embedding for query
-        List<Double> queryEmbedding = embeddingService.generateEmbedding(query);
+        Embedding queryEmbedding = embeddingService.generateEmbedding(query);
         
         if (queryEmbedding == null) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -76,10 +77,8 @@ public class RagTestController {
             ));
         }
         
-        String vectorString = embeddingService.embeddingToVectorString(queryEmbedding);
-        
         // Search for similar chunks
-        List<RagChunk> similarChunks = ragChunkRepository.findSimilarByEmbedding(vectorString, limit);
+        List<RetrievedChunk> similarChunks = vectorIndex.search(queryEmbedding, null, limit);
         
         // Format response
         List<Map<String, Object>> results = similarChunks.stream()
@@ -112,7 +111,7 @@ public class RagTestController {
             String modpack,
             @RequestParam(defaultValue = "5") @Min(1) @Max(20) int limit
     ) {
-        List<Double> queryEmbedding = embeddingService.generateEmbedding(query);
+        Embedding queryEmbedding = embeddingService.generateEmbedding(query);
         
         if (queryEmbedding == null) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -120,9 +119,8 @@ public class RagTestController {
             ));
         }
         
-        String vectorString = embeddingService.embeddingToVectorString(queryEmbedding);
-        List<RagChunk> similarChunks = ragChunkRepository.findSimilarByEmbeddingAndModpack(
-            vectorString, 
+        List<RetrievedChunk> similarChunks = vectorIndex.search(
+            queryEmbedding, 
             modpack, 
             limit
         );
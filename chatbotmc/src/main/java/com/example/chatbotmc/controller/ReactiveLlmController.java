@@ -0,0 +1,76 @@
+package com.example.chatbotmc.controller;
+
+import com.example.chatbotmc.config.AuthenticatedUser;
+import com.example.chatbotmc.dto.ChatRequest;
+import com.example.chatbotmc.dto.ChatResponse;
+import com.example.chatbotmc.dto.ChatStreamEvent;
+import com.example.chatbotmc.service.ReactiveChatService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Non-blocking variants of the /api/llm chat endpoints, enabled with chat.reactive.enabled
+ * The request thread is released as soon as the pipeline is returned; the response is
+ * written from an async dispatch once it completes.
+ */
+@RestController
+@RequestMapping("/api/llm/reactive")
+@ConditionalOnProperty(name = "chat.reactive.enabled", havingValue = "true")
+public class ReactiveLlmController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveLlmController.class);
+
+    private final ReactiveChatService reactiveChatService;
+
+    public ReactiveLlmController(ReactiveChatService reactiveChatService) {
+        this.reactiveChatService = reactiveChatService;
+    }
+
+    /**
+     * Same contract as POST /api/llm/chat
+     */
+    @PostMapping("/chat")
+    public Mono<ChatResponse> chat(
+            @Valid @RequestBody ChatRequest request,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        
+        return reactiveChatService.chat(user.userId(), request.prompt(), request.conversationId());
+    }
+    
+    /**
+     * Same events as POST /api/llm/chat/stream
+     * The quota check runs inside the pipeline, so a rejected request ends with an "error" event.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> chatStream(
+            @Valid @RequestBody ChatRequest request,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        
+        return reactiveChatService.streamChat(user.userId(), request.prompt(), request.conversationId())
+                .map(this::toServerSentEvent)
+                .onErrorResume(e -> {
+                    logger.error("Chat stream failed: {}", e.getMessage(), e);
+                    return Flux.just(ServerSentEvent.builder()
+                            .event("error")
+                            .data(Map.of("message", "Failed to generate response"))
+                            .build());
+                });
+    }
+    
+    private ServerSentEvent<Object> toServerSentEvent(ChatStreamEvent event) {
+        if (event.isDone()) {
+            return ServerSentEvent.builder().event("done").data(event.done()).build();
+        }
+        return ServerSentEvent.builder().event("delta").data(event.delta()).build();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.chatbotmc.dto;
+
+/**
+ * One event of a streamed chat: either a piece of the answer or, at the end,
+ * the persisted assistant message
+ */
+public record ChatStreamEvent(
+    String delta,
+    ChatResponse done
+) {
+    public static ChatStreamEvent delta(String text) {
+        return new ChatStreamEvent(text, null);
+    }
+    
+    public static ChatStreamEvent done(ChatResponse response) {
+        return new ChatStreamEvent(null, response);
+    }
+    
+    public boolean isDone() {
+        return done != null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.chatbotmc.dto;
+
+import java.util.List;
+
+/**
+ * One page of conversation messages, newest first
+ * nextCursor fetches the next older page and is null on the last page.
+ */
+public record MessagePageDTO(
+    List<ChatMessageDTO> messages,
+    String nextCursor,
+    boolean hasMore
+) {}
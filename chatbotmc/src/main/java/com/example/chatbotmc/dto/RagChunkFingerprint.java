@@ -0,0 +1,17 @@
+package com.example.chatbotmc.dto;
+
+/**
+ * Projection of the rag_chunk columns needed to diff data.json against the table
+ * Deliberately excludes text and embedding
+ */
+public interface RagChunkFingerprint {
+    Long getId();
+    String getChunkId();
+    String getContentHash();
+    String getModpack();
+    String getModName();
+    String getModVersion();
+    String getCategory();
+    String getDocType();
+    String getLanguage();
+}
@@ -0,0 +1,12 @@
+package com.example.chatbotmc.dto;
+
+import com.example.chatbotmc.llm.Embedding;
+
+/**
+ * Projection of the columns needed to build an in-process vector index
+ */
+public interface RagChunkVector {
+    Long getId();
+    String getModpack();
+    Embedding getEmbedding();
+}
@@ -0,0 +1,41 @@
+package com.example.chatbotmc.dto;
+
+/**
+ * Projection of a rag_chunk row returned by retrieval
+ * Deliberately excludes the embedding, which prompt building never reads and which is the
+ * bulk of each row (768 floats).
+ */
+public interface RetrievedChunk {
+    Long getId();
+    String getChunkId();
+    String getText();
+    String getModpack();
+    String getModName();
+    String getModVersion();
+    String getCategory();
+    String getDocType();
+    String getLanguage();
+    
+    /**
+     * Cosine distance to the query embedding, or null for chunks found by full-text search only
+     */
+    Double getDistance();
+    
+    /**
+     * Cosine similarity to the query embedding (1 - distance), or null without a distance
+     */
+    default Double getSimilarity() {
+        Double distance = getDistance();
+        return distance == null ? null : 1 - distance;
+    }
+    
+    /**
+     * Distinct query terms found in the chunk, or null for chunks not found by full-text search
+     */
+    Integer getMatchedTerms();
+    
+    /**
+     * Distinct terms in the query after stemming and stop-word removal, alongside getMatchedTerms
+     */
+    Integer getQueryTerms();
+}
@@ -6,7 +6,10 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+    // Keyset pagination of a conversation's history
+    @Index(name = "idx_chat_messages_conversation_created_id", columnList = "conversation_id, created_at, id")
+})
 @Getter
 @Setter
 public class ChatMessage {
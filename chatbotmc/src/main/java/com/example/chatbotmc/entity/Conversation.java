@@ -29,6 +29,13 @@ public class Conversation {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Rolling summary of all messages up to summarizedUpToMessageId, kept by ConversationMemoryService
+    @Column(columnDefinition = "TEXT")
+    private String summary;
+    
+    @Column(name = "summarized_up_to_message_id")
+    private Long summarizedUpToMessageId;
+    
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ChatMessage> messages = new ArrayList<>();
     
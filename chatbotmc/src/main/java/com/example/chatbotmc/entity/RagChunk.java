@@ -1,6 +1,7 @@
 package com.example.chatbotmc.entity;
 
 import com.example.chatbotmc.config.VectorType;
+import com.example.chatbotmc.llm.Embedding;
 import jakarta.persistence.*;
 import org.hibernate.annotations.Type;
 
@@ -20,7 +21,11 @@ public class RagChunk {
     
     @Type(VectorType.class)
     @Column(columnDefinition = "vector(768)")
-    private String embedding;
+    private Embedding embedding;
+    
+    // SHA-256 of embedding model id + text, set only when the embedding was generated
+    @Column(length = 64)
+    private String contentHash;
     
     // Metadata fields
     private String modpack;
@@ -62,14 +67,22 @@ public class RagChunk {
         this.text = text;
     }
     
-    public String getEmbedding() {
+    public Embedding getEmbedding() {
         return embedding;
     }
     
-    public void setEmbedding(String embedding) {
+    public void setEmbedding(Embedding embedding) {
         this.embedding = embedding;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public String getModpack() {
         return modpack;
     }
@@ -0,0 +1,23 @@
+package com.example.chatbotmc.exception;
+
+/**
+ * The language model or embedding API refused the request itself (400, 403, 404...)
+ * Mapped to 400 Bad Request like other RuntimeExceptions. Unlike the WebClient exception it
+ * replaces, the message carries no request URL (and so no API key) and is safe to show to clients.
+ */
+public class LlmRequestRejectedException extends RuntimeException {
+
+    private final int statusCode;
+
+    public LlmRequestRejectedException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * HTTP status the API answered with
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
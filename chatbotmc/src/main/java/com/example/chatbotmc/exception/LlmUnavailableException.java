@@ -0,0 +1,30 @@
+package com.example.chatbotmc.exception;
+
+import java.time.Duration;
+
+/**
+ * The language model or embedding API cannot take the call right now: circuit open,
+ * too many concurrent calls, timed out or failed after retries
+ * Mapped to 503 Service Unavailable. The message is safe to show to clients.
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public LlmUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public LlmUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = null;
+    }
+
+    /**
+     * Suggested wait before retrying, or null if unknown
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.chatbotmc.llm;
+
+import java.util.Arrays;
+
+/**
+ * Dense embedding vector backed by a primitive float array
+ * A 768-dimensional embedding takes ~3 KB instead of ~18 KB as List<Double>
+ */
+public final class Embedding {
+
+    private final float[] values;
+
+    public Embedding(float[] values) {
+        if (values == null || values.length == 0) {
+            throw new IllegalArgumentException("Embedding must have at least one dimension");
+        }
+        this.values = values;
+    }
+
+    /**
+     * Raw vector values. The array is shared, callers must not modify it.
+     */
+    public float[] values() {
+        return values;
+    }
+
+    public int dimensions() {
+        return values.length;
+    }
+
+    /**
+     * Copy scaled to unit length, so cosine similarity becomes a dot product
+     * A zero vector stays zero.
+     */
+    public float[] normalized() {
+        double norm = 0;
+        for (float v : values) {
+            norm += v * v;
+        }
+        float[] normalized = new float[values.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < values.length; i++) {
+            normalized[i] = values[i] * scale;
+        }
+        return normalized;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Embedding other && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "Embedding[dimensions=" + values.length + "]";
+    }
+}
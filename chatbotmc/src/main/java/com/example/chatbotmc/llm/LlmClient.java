@@ -1,5 +1,24 @@
 package com.example.chatbotmc.llm;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 public interface LlmClient {
     String generate(String prompt);
+    
+    /**
+     * Non-blocking variant of generate
+     * The default runs generate on a worker thread; clients with a reactive transport override it.
+     */
+    default Mono<String> generateAsync(String prompt) {
+        return Mono.fromCallable(() -> generate(prompt))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    /**
+     * Generate a response as a stream of text chunks, emitted as the model produces them
+     * Concatenating the chunks gives the full response.
+     */
+    Flux<String> stream(String prompt);
 }
@@ -0,0 +1,236 @@
+package com.example.chatbotmc.llm.gemini;
+
+import com.example.chatbotmc.exception.LlmRequestRejectedException;
+import com.example.chatbotmc.exception.LlmUnavailableException;
+import com.example.chatbotmc.util.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Resilience policy for one kind of Gemini call (generation or embedding)
+ * Wraps each call, outermost first, in:
+ * - a bulkhead: at most maxConcurrent calls in flight or waiting for a pooled connection,
+ *   extra calls are rejected at once
+ * - retries with jittered exponential backoff on 429 and 503
+ * - a circuit breaker, fed by every attempt, failing fast while Gemini is down
+ * - a per-attempt timeout
+ * Upstream failures surface as LlmUnavailableException and rejected requests as
+ * LlmRequestRejectedException, never as a hanging call or a raw WebClient exception (whose
+ * message would include the request URL and API key).
+ */
+public class GeminiCallPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiCallPolicy.class);
+
+    private final String name;
+    private final Duration timeout;
+    private final int maxConcurrent;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxRetries;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final LongAdder bulkheadRejections = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    public GeminiCallPolicy(String name, Duration timeout, int maxConcurrent, CircuitBreaker circuitBreaker,
+                            int maxRetries, Duration initialBackoff, Duration maxBackoff) {
+        this.name = name;
+        this.timeout = timeout;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.bulkhead = new Semaphore(this.maxConcurrent);
+        this.circuitBreaker = circuitBreaker;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Apply the policy to a single-response call
+     */
+    public <T> Mono<T> apply(Supplier<Mono<T>> call) {
+        Mono<T> attempt = Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return Mono.error(circuitOpen());
+            }
+            return guard(call.get().timeout(timeout));
+        });
+
+        Mono<T> retried = attempt.retryWhen(Retry.backoff(maxRetries, initialBackoff)
+                .maxBackoff(maxBackoff)
+                .jitter(0.5)
+                .filter(GeminiCallPolicy::isRetryable)
+                .doBeforeRetry(signal -> {
+                    retries.increment();
+                    logger.warn("Retrying Gemini {} call after: {}", name, signal.failure().getMessage());
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+
+        return withBulkhead(retried.onErrorMap(this::sanitize));
+    }
+
+    /**
+     * Apply the policy to a streamed call
+     * The timeout bounds the wait for each element. Streams are not retried, since elements
+     * may already have been delivered.
+     */
+    public <T> Flux<T> applyMany(Supplier<Flux<T>> call) {
+        Flux<T> attempt = Flux.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return Flux.error(circuitOpen());
+            }
+            return guard(call.get().timeout(timeout));
+        });
+
+        return withBulkhead(attempt.onErrorMap(this::sanitize));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Stats stats() {
+        return new Stats(name, circuitBreaker.stats(), maxConcurrent - bulkhead.availablePermits(), maxConcurrent,
+            bulkheadRejections.sum(), timeouts.sum(), retries.sum());
+    }
+
+    /**
+     * Report the outcome of one permitted attempt to the circuit breaker
+     */
+    private <T> Mono<T> guard(Mono<T> attempt) {
+        return attempt
+                .doOnSuccess(value -> circuitBreaker.onSuccess())
+                .doOnError(this::recordFailure)
+                .doOnCancel(circuitBreaker::onIgnored);
+    }
+
+    private <T> Flux<T> guard(Flux<T> attempt) {
+        return attempt
+                .doOnComplete(circuitBreaker::onSuccess)
+                .doOnError(this::recordFailure)
+                .doOnCancel(circuitBreaker::onIgnored);
+    }
+
+    private void recordFailure(Throwable error) {
+        // No connection free in time says nothing about Gemini
+        if (isPoolSaturated(error)) {
+            circuitBreaker.onIgnored();
+            return;
+        }
+        if (error instanceof TimeoutException) {
+            timeouts.increment();
+        }
+        // A rejected request (400, 403...) means Gemini is up, so it does not count against it
+        if (isUpstreamFailure(error)) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    private <T> Mono<T> withBulkhead(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!bulkhead.tryAcquire()) {
+                bulkheadRejections.increment();
+                return Mono.error(busy());
+            }
+            return call.doFinally(signal -> bulkhead.release());
+        });
+    }
+
+    private <T> Flux<T> withBulkhead(Flux<T> call) {
+        return Flux.defer(() -> {
+            if (!bulkhead.tryAcquire()) {
+                bulkheadRejections.increment();
+                return Flux.error(busy());
+            }
+            return call.doFinally(signal -> bulkhead.release());
+        });
+    }
+
+    private LlmUnavailableException circuitOpen() {
+        Duration retryAfter = circuitBreaker.remainingOpenDuration();
+        return new LlmUnavailableException("The assistant is temporarily unavailable. Please try again shortly.",
+            retryAfter.isZero() ? null : retryAfter);
+    }
+
+    private LlmUnavailableException busy() {
+        return new LlmUnavailableException("The assistant is busy. Please try again in a moment.", (Duration) null);
+    }
+
+    /**
+     * Replace errors that can reach a client with ones whose message is safe to show
+     */
+    private Throwable sanitize(Throwable error) {
+        if (isPoolSaturated(error)) {
+            logger.warn("Gemini {} call found no free connection: {}", name, error.getMessage());
+            return busy();
+        }
+        if (isUpstreamFailure(error)) {
+            logger.error("Gemini {} call failed: {}", name, error.getMessage());
+            return new LlmUnavailableException("The assistant is temporarily unavailable. Please try again shortly.", error);
+        }
+        if (error instanceof WebClientResponseException response) {
+            // No cause attached: its message, logged with the stack trace, would carry the API key too
+            logger.warn("Gemini {} call rejected with {} {}", name, response.getStatusCode().value(), response.getStatusText());
+            return new LlmRequestRejectedException("The assistant could not process this request.",
+                response.getStatusCode().value());
+        }
+        return error;
+    }
+
+    /**
+     * Rate limited or temporarily overloaded: worth another attempt after a pause
+     */
+    static boolean isRetryable(Throwable error) {
+        return error instanceof WebClientResponseException response
+            && (response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || response.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value());
+    }
+
+    /**
+     * Failure of Gemini itself rather than of our request
+     */
+    static boolean isUpstreamFailure(Throwable error) {
+        if (isPoolSaturated(error)) {
+            return false;
+        }
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError()
+                || response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return error instanceof TimeoutException || error instanceof WebClientRequestException
+            || error instanceof MalformedResponseException;
+    }
+
+    /**
+     * The shared connection pool's wait queue was full or the wait timed out
+     */
+    static boolean isPoolSaturated(Throwable error) {
+        return error instanceof WebClientRequestException request
+            && (request.getCause() instanceof PoolAcquireTimeoutException
+                || request.getCause() instanceof PoolAcquirePendingLimitException);
+    }
+
+    /**
+     * @param inFlight Calls currently holding a bulkhead permit
+     */
+    public record Stats(String name, CircuitBreaker.Stats circuit, int inFlight, int maxConcurrent,
+                        long bulkheadRejections, long timeouts, long retries) {}
+}
@@ -0,0 +1,56 @@
+package com.example.chatbotmc.llm.gemini;
+
+import com.example.chatbotmc.llm.Embedding;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.ValueDeserializer;
+
+import java.util.Arrays;
+
+/**
+ * Reads a Gemini ContentEmbedding object ({"values": [...]}) straight into a float[]
+ * without materializing a List of boxed Doubles
+ */
+public class GeminiEmbeddingDeserializer extends ValueDeserializer<Embedding> {
+
+    // text-embedding-004 returns 768 dimensions, so this usually never grows
+    private static final int INITIAL_CAPACITY = 768;
+
+    @Override
+    public Embedding deserialize(JsonParser p, DeserializationContext ctxt) {
+        if (!p.isExpectedStartObjectToken()) {
+            return (Embedding) ctxt.handleUnexpectedToken(Embedding.class, p);
+        }
+
+        float[] values = null;
+        for (JsonToken token = p.nextToken(); token == JsonToken.PROPERTY_NAME; token = p.nextToken()) {
+            String name = p.currentName();
+            JsonToken valueToken = p.nextToken();
+            if ("values".equals(name) && valueToken == JsonToken.START_ARRAY) {
+                values = readValues(p, ctxt);
+            } else {
+                p.skipChildren();
+            }
+        }
+
+        return values == null || values.length == 0 ? null : new Embedding(values);
+    }
+
+    private float[] readValues(JsonParser p, DeserializationContext ctxt) {
+        float[] buffer = new float[INITIAL_CAPACITY];
+        int size = 0;
+
+        for (JsonToken token = p.nextToken(); token != JsonToken.END_ARRAY; token = p.nextToken()) {
+            if (token == null || !token.isNumeric()) {
+                return (float[]) ctxt.handleUnexpectedToken(float[].class, p);
+            }
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = p.getFloatValue();
+        }
+
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+}
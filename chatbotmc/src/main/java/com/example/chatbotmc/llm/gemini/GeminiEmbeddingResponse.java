@@ -0,0 +1,24 @@
+package com.example.chatbotmc.llm.gemini;
+
+import com.example.chatbotmc.llm.Embedding;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import tools.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.List;
+
+/**
+ * Response of the embedContent endpoint
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GeminiEmbeddingResponse(
+        @JsonDeserialize(using = GeminiEmbeddingDeserializer.class) Embedding embedding
+) {
+
+    /**
+     * Response of the batchEmbedContents endpoint, embeddings are in request order
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Batch(
+            @JsonDeserialize(contentUsing = GeminiEmbeddingDeserializer.class) List<Embedding> embeddings
+    ) {}
+}
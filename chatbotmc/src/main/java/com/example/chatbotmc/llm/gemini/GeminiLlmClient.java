@@ -1,49 +1,86 @@
 package com.example.chatbotmc.llm.gemini;
 
 import com.example.chatbotmc.llm.LlmClient;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Component
 @Profile("gemini")
 public class GeminiLlmClient implements LlmClient {
 
+    private static final String MODEL = "gemini-2.0-flash-lite-001";
+
     private final WebClient webClient;
     private final String apiKey;
+    private final GeminiCallPolicy callPolicy;
 
     public GeminiLlmClient(
             WebClient geminiWebClient,
-            @Value("${gemini.api-key}") String apiKey
+            @Value("${gemini.api-key}") String apiKey,
+            @Qualifier("geminiGenerationPolicy") GeminiCallPolicy callPolicy
     ) {
         this.webClient = geminiWebClient;
         this.apiKey = apiKey;
+        this.callPolicy = callPolicy;
     }
 
     @Override
     public String generate(String prompt) {
+        return generateAsync(prompt).block();
+    }
+
+    @Override
+    public Mono<String> generateAsync(String prompt) {
+
+        // Parsed inside the policy, so a malformed response counts against the circuit breaker
+        return callPolicy.apply(() -> webClient.post()
+                .uri("/v1beta/models/" + MODEL + ":generateContent?key=" + apiKey)
+                .bodyValue(buildRequest(prompt))
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                // An empty body fails parsing like any other malformed response
+                .defaultIfEmpty(Map.of())
+                .map(this::extractText));
+    }
+
+    /**
+     * Stream the response with streamGenerateContent over server-sent events
+     * Each event carries a partial GenerateContentResponse with the next piece of text.
+     */
+    @Override
+    public Flux<String> stream(String prompt) {
+
+        return callPolicy.applyMany(() -> webClient.post()
+                .uri("/v1beta/models/" + MODEL + ":streamGenerateContent?alt=sse&key=" + apiKey)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(buildRequest(prompt))
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() {}))
+                .mapNotNull(ServerSentEvent::data)
+                .map(this::extractChunkText)
+                .filter(text -> !text.isEmpty());
+    }
 
-        GeminiRequest request = new GeminiRequest(
+    private GeminiRequest buildRequest(String prompt) {
+        return new GeminiRequest(
                 List.of(
                         new GeminiRequest.Content(
                                 List.of(new GeminiRequest.Part(prompt))
                         )
                 )
         );
-
-        Map<String, Object> response = webClient.post()
-                .uri("/v1beta/models/gemini-2.0-flash-lite-001:generateContent?key=" + apiKey)
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .block();
-
-        return extractText(response);
     }
 
     private String extractText(Map<String, Object> response) {
@@ -53,9 +90,30 @@ public class GeminiLlmClient implements LlmClient {
             Map<?, ?> content = (Map<?, ?>) candidate.get("content");
             List<?> parts = (List<?>) content.get("parts");
             Map<?, ?> part = (Map<?, ?>) parts.get(0);
-            return (String) part.get("text");
+            return Objects.requireNonNull((String) part.get("text"), "no text part");
         } catch (Exception e) {
-            return "Gemini response parsing failed.";
+            // Fail instead of returning the error text as an answer that would be saved and cached
+            throw new MalformedResponseException("Gemini response parsing failed.", e);
+        }
+    }
+
+    /**
+     * Text of one streamed chunk; the last chunk may only carry finishReason and usage
+     */
+    private String extractChunkText(Map<String, Object> chunk) {
+        if (!(chunk.get("candidates") instanceof List<?> candidates) || candidates.isEmpty()
+                || !(candidates.get(0) instanceof Map<?, ?> candidate)
+                || !(candidate.get("content") instanceof Map<?, ?> content)
+                || !(content.get("parts") instanceof List<?> parts)) {
+            return "";
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Map<?, ?> map && map.get("text") instanceof String partText) {
+                text.append(partText);
+            }
         }
+        return text.toString();
     }
 }
@@ -0,0 +1,12 @@
+package com.example.chatbotmc.llm.gemini;
+
+/**
+ * Gemini answered 200 but with a body that holds no usable text
+ * Counts as an upstream failure in GeminiCallPolicy, like a 5xx.
+ */
+class MalformedResponseException extends RuntimeException {
+
+    MalformedResponseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -3,6 +3,13 @@ package com.example.chatbotmc.prompt;
 public class PromptBuilder {
 
     public static String minecraftPrompt(String message) {
+        return minecraftPrompt(message, "");
+    }
+
+    /**
+     * @param history Rendered conversation so far, empty for a first question
+     */
+    public static String minecraftPrompt(String message, String history) {
         return """
             You are a helpful Minecraft assistant chatbot. You have extensive knowledge about:
             - Minecraft gameplay, mechanics, and strategies
@@ -14,7 +21,44 @@ public class PromptBuilder {
             Please provide helpful, accurate, and friendly responses to Minecraft-related questions.
             If the question is not about Minecraft, politely redirect the conversation back to Minecraft topics.
             
-            User's question: %s
-            """.formatted(message);
+            %sUser's question: %s
+            """.formatted(historySection(history), message);
+    }
+
+    /**
+     * Conversation block placed right before the question, or empty without history
+     */
+    public static String historySection(String history) {
+        if (history == null || history.isBlank()) {
+            return "";
+        }
+        return """
+            CONVERSATION SO FAR (the question may refer back to it):
+            %s
+            
+            """.formatted(history.strip());
+    }
+
+    /**
+     * Prompt that folds new messages into the rolling summary of a conversation
+     * 
+     * @param previousSummary Summary so far, null or empty for the first one
+     * @param transcript The messages to add, one "Role: text" line each
+     */
+    public static String conversationSummaryPrompt(String previousSummary, String transcript, int maxWords) {
+        String previous = previousSummary == null || previousSummary.isBlank() ? "(none yet)" : previousSummary.strip();
+        return """
+            You maintain a running summary of a conversation between a player and a Minecraft assistant.
+            Update the summary with the new messages below. Keep the facts a later question could refer
+            back to: the modpacks, mods, items and builds discussed, the player's setup and goals, and what
+            the assistant recommended. Drop greetings and small talk. Write plain prose in at most %d words.
+            Reply with the updated summary only.
+            
+            CURRENT SUMMARY:
+            %s
+            
+            NEW MESSAGES:
+            %s
+            """.formatted(maxWords, previous, transcript.strip());
     }
 }
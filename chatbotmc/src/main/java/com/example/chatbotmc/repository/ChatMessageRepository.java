@@ -1,11 +1,79 @@
 package com.example.chatbotmc.repository;
 
+import com.example.chatbotmc.dto.ChatMessageDTO;
 import com.example.chatbotmc.entity.ChatMessage;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     List<ChatMessage> findByConversationIdOrderByCreatedAtAsc(Long conversationId);
-}
\ No newline at end of file
+    
+    /**
+     * Newest messages of a conversation, served by the (conversation_id, created_at, id) index
+     */
+    @Query("""
+        SELECT new com.example.chatbotmc.dto.ChatMessageDTO(m.id, m.content, m.role, m.createdAt)
+        FROM ChatMessage m
+        WHERE m.conversation.id = :conversationId
+        ORDER BY m.createdAt DESC, m.id DESC
+        """)
+    List<ChatMessageDTO> findLatestPage(@Param("conversationId") Long conversationId, Limit limit);
+    
+    /**
+     * Messages older than the cursor position (createdAt, id), newest first
+     * The row comparison lets Postgres continue the index scan from the cursor instead of
+     * skipping over an offset.
+     */
+    @Query("""
+        SELECT new com.example.chatbotmc.dto.ChatMessageDTO(m.id, m.content, m.role, m.createdAt)
+        FROM ChatMessage m
+        WHERE m.conversation.id = :conversationId
+        AND (m.createdAt, m.id) < (:createdAt, :id)
+        ORDER BY m.createdAt DESC, m.id DESC
+        """)
+    List<ChatMessageDTO> findPageBefore(
+        @Param("conversationId") Long conversationId,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") Long id,
+        Limit limit
+    );
+    
+    /**
+     * Newest messages of a conversation between two message ids (both exclusive), newest first
+     */
+    @Query("""
+        SELECT new com.example.chatbotmc.dto.ChatMessageDTO(m.id, m.content, m.role, m.createdAt)
+        FROM ChatMessage m
+        WHERE m.conversation.id = :conversationId
+        AND m.id > :afterId AND m.id < :beforeId
+        ORDER BY m.createdAt DESC, m.id DESC
+        """)
+    List<ChatMessageDTO> findLatestBetween(
+        @Param("conversationId") Long conversationId,
+        @Param("afterId") Long afterId,
+        @Param("beforeId") Long beforeId,
+        Limit limit
+    );
+    
+    /**
+     * Oldest messages of a conversation after a message id, oldest first
+     */
+    @Query("""
+        SELECT new com.example.chatbotmc.dto.ChatMessageDTO(m.id, m.content, m.role, m.createdAt)
+        FROM ChatMessage m
+        WHERE m.conversation.id = :conversationId
+        AND m.id > :afterId
+        ORDER BY m.createdAt ASC, m.id ASC
+        """)
+    List<ChatMessageDTO> findOldestAfter(
+        @Param("conversationId") Long conversationId,
+        @Param("afterId") Long afterId,
+        Limit limit
+    );
+}
@@ -1,7 +1,11 @@
 package com.example.chatbotmc.repository;
 
+import com.example.chatbotmc.dto.ConversationDTO;
 import com.example.chatbotmc.entity.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -10,4 +14,34 @@ import java.util.Optional;
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
     List<Conversation> findByUserIdOrderByUpdatedAtDesc(Long userId);
     Optional<Conversation> findByIdAndUserId(Long id, Long userId);
-}
\ No newline at end of file
+    
+    /**
+     * Conversation list with message counts in one aggregate query, without loading any messages
+     */
+    @Query("""
+        SELECT new com.example.chatbotmc.dto.ConversationDTO(
+            c.id, c.title, c.createdAt, c.updatedAt, CAST(COUNT(m.id) AS Integer))
+        FROM Conversation c LEFT JOIN c.messages m
+        WHERE c.user.id = :userId
+        GROUP BY c.id, c.title, c.createdAt, c.updatedAt
+        ORDER BY c.updatedAt DESC
+        """)
+    List<ConversationDTO> findSummariesByUserId(@Param("userId") Long userId);
+    
+    /**
+     * Replace the rolling summary unless another update advanced it since it was read
+     * Bulk updates skip @PreUpdate, so summarizing does not move the conversation up the list.
+     * @return 1 if the summary was replaced, 0 if the conversation is gone or was summarized meanwhile
+     */
+    @Modifying
+    @Query("""
+        UPDATE Conversation c SET c.summary = :summary, c.summarizedUpToMessageId = :upToId
+        WHERE c.id = :id AND COALESCE(c.summarizedUpToMessageId, 0) = :previousUpToId
+        """)
+    int updateSummaryIfUnchanged(
+        @Param("id") Long id,
+        @Param("summary") String summary,
+        @Param("upToId") Long upToId,
+        @Param("previousUpToId") Long previousUpToId
+    );
+}
@@ -1,70 +1,180 @@
 package com.example.chatbotmc.repository;
 
+import com.example.chatbotmc.dto.RagChunkFingerprint;
+import com.example.chatbotmc.dto.RagChunkVector;
+import com.example.chatbotmc.dto.RetrievedChunk;
 import com.example.chatbotmc.entity.RagChunk;
+import com.example.chatbotmc.llm.Embedding;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RagChunkRepository extends JpaRepository<RagChunk, Long> {
     
+    /**
+     * Document searched by the full-text queries; the GIN index built by VectorIndexManager
+     * uses the same expression, which Postgres requires to match exactly
+     */
+    String TEXT_SEARCH_DOCUMENT = "to_tsvector('english', coalesce(mod_name, '') || ' ' || text)";
+    
+    /**
+     * rag_chunk columns of the RetrievedChunk projection, without the embedding
+     * Aliases are quoted so Postgres keeps the camel case the projection looks up.
+     */
+    String RETRIEVED_COLUMNS = "id, chunk_id AS \"chunkId\", text, modpack, mod_name AS \"modName\","
+        + " mod_version AS \"modVersion\", category, doc_type AS \"docType\", language";
+    
+    /**
+     * Query terms for full-text search: the AND-query from plainto_tsquery turned into an
+     * OR-query, so exact identifiers count even when the rest of the question does not appear,
+     * plus the distinct query lexemes for counting how many of them a chunk contains
+     */
+    String FULL_TEXT_TERMS = "WITH q AS ("
+        + " SELECT CAST(replace(CAST(plainto_tsquery('english', :query) AS text), '&', '|') AS tsquery) AS terms,"
+        + " tsvector_to_array(to_tsvector('english', :query)) AS lexemes"
+        + ") ";
+    
+    /**
+     * matchedTerms and queryTerms columns of a full-text hit
+     */
+    String FULL_TEXT_TERM_COUNTS = "(SELECT count(*) FROM unnest(q.lexemes) AS lexeme"
+        + " WHERE lexeme = ANY(tsvector_to_array(" + TEXT_SEARCH_DOCUMENT + "))) AS \"matchedTerms\","
+        + " cardinality(q.lexemes) AS \"queryTerms\"";
+    
+    String FULL_TEXT_MATCHES = " FROM rag_chunk, q"
+        + " WHERE " + TEXT_SEARCH_DOCUMENT + " @@ q.terms"
+        + " AND (CAST(:modpack AS text) IS NULL OR modpack = CAST(:modpack AS text))"
+        + " ORDER BY ts_rank_cd(" + TEXT_SEARCH_DOCUMENT + ", q.terms) DESC, id"
+        + " LIMIT :limit";
+    
     Optional<RagChunk> findByChunkId(String chunkId);
     
     List<RagChunk> findByModpack(String modpack);
     
     List<RagChunk> findByCategory(String category);
     
+    /**
+     * Chunk ids, content hashes and metadata without loading text or embeddings
+     */
+    @Query("""
+        SELECT c.id AS id, c.chunkId AS chunkId, c.contentHash AS contentHash,
+               c.modpack AS modpack, c.modName AS modName, c.modVersion AS modVersion,
+               c.category AS category, c.docType AS docType, c.language AS language
+        FROM RagChunk c
+        """)
+    List<RagChunkFingerprint> findAllFingerprints();
+
+    /**
+     * Ids, modpacks and embeddings of all embedded chunks, for the in-process index
+     */
+    @Query("SELECT c.id AS id, c.modpack AS modpack, c.embedding AS embedding FROM RagChunk c WHERE c.embedding IS NOT NULL")
+    List<RagChunkVector> findAllVectors();
+
+    @Query("""
+        SELECT c.id AS id, c.modpack AS modpack, c.embedding AS embedding FROM RagChunk c
+        WHERE c.embedding IS NOT NULL AND c.id IN :ids
+        """)
+    List<RagChunkVector> findVectorsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Retrieval projection of the given chunks, for the in-process index
+     * Carries no distance; the caller already has it from the graph.
+     */
+    @Query("""
+        SELECT c.id AS id, c.chunkId AS chunkId, c.text AS text,
+               c.modpack AS modpack, c.modName AS modName, c.modVersion AS modVersion,
+               c.category AS category, c.docType AS docType, c.language AS language
+        FROM RagChunk c WHERE c.id IN :ids
+        """)
+    List<RetrievedChunk> findRetrievedByIdIn(@Param("ids") Collection<Long> ids);
+    
     /**
      * Find similar chunks using cosine similarity with pgvector
      * Returns top K most similar chunks to the query embedding
+     * The Embedding parameter is bound in binary form through VectorType
      */
-    @Query(value = """
-        SELECT * FROM rag_chunk 
+    @Query(value = "SELECT " + RETRIEVED_COLUMNS + """
+        , embedding <=> CAST(:queryEmbedding AS vector) AS distance
+        FROM rag_chunk 
         WHERE embedding IS NOT NULL 
         ORDER BY embedding <=> CAST(:queryEmbedding AS vector) 
         LIMIT :limit
         """, nativeQuery = true)
-    List<RagChunk> findSimilarByEmbedding(
-        @Param("queryEmbedding") String queryEmbedding, 
+    List<RetrievedChunk> findSimilarByEmbedding(
+        @Param("queryEmbedding") Embedding queryEmbedding, 
         @Param("limit") int limit
     );
     
     /**
      * Find similar chunks filtered by modpack
      */
-    @Query(value = """
-        SELECT * FROM rag_chunk 
+    @Query(value = "SELECT " + RETRIEVED_COLUMNS + """
+        , embedding <=> CAST(:queryEmbedding AS vector) AS distance
+        FROM rag_chunk 
         WHERE embedding IS NOT NULL 
         AND modpack = :modpack
         ORDER BY embedding <=> CAST(:queryEmbedding AS vector) 
         LIMIT :limit
         """, nativeQuery = true)
-    List<RagChunk> findSimilarByEmbeddingAndModpack(
-        @Param("queryEmbedding") String queryEmbedding,
+    List<RetrievedChunk> findSimilarByEmbeddingAndModpack(
+        @Param("queryEmbedding") Embedding queryEmbedding,
         @Param("modpack") String modpack,
         @Param("limit") int limit
     );
     
     /**
-     * Find similar chunks with similarity score above threshold
+     * Find similar chunks with cosine similarity of at least the threshold
+     * The distance is computed once per row; the nearest-neighbour scan picks the top K and
+     * only those are filtered, so the ANN index is still used.
+     * 
+     * @param modpack Only chunks of this modpack, or null for all
      */
-    @Query(value = """
-        SELECT *, 1 - (embedding <=> CAST(:queryEmbedding AS vector)) as similarity 
-        FROM rag_chunk 
-        WHERE embedding IS NOT NULL 
-        AND 1 - (embedding <=> CAST(:queryEmbedding AS vector)) > :threshold
-        ORDER BY embedding <=> CAST(:queryEmbedding AS vector) 
-        LIMIT :limit
+    @Query(value = "SELECT * FROM (SELECT " + RETRIEVED_COLUMNS + """
+            , embedding <=> CAST(:queryEmbedding AS vector) AS distance
+            FROM rag_chunk
+            WHERE embedding IS NOT NULL
+            AND (CAST(:modpack AS text) IS NULL OR modpack = CAST(:modpack AS text))
+            ORDER BY distance
+            LIMIT :limit
+        ) hits
+        WHERE 1 - distance >= :threshold
+        ORDER BY distance
         """, nativeQuery = true)
-    List<RagChunk> findSimilarAboveThreshold(
-        @Param("queryEmbedding") String queryEmbedding,
+    List<RetrievedChunk> findSimilarAboveThreshold(
+        @Param("queryEmbedding") Embedding queryEmbedding,
+        @Param("modpack") String modpack,
         @Param("threshold") double threshold,
         @Param("limit") int limit
     );
     
+    /**
+     * Full-text search over mod name and text, best ts_rank_cd first
+     * Any query term may match, see FULL_TEXT_TERMS; each hit reports how many of the query's
+     * terms it contains, so callers can require more than one. Hits carry no distance.
+     * 
+     * @param modpack Only chunks of this modpack, or null for all
+     */
+    @Query(value = FULL_TEXT_TERMS
+        + "SELECT " + RETRIEVED_COLUMNS + ", CAST(NULL AS float8) AS distance, " + FULL_TEXT_TERM_COUNTS
+        + FULL_TEXT_MATCHES, nativeQuery = true)
+    List<RetrievedChunk> findByFullText(
+        @Param("query") String query,
+        @Param("modpack") String modpack,
+        @Param("limit") int limit
+    );
+    
     long countByEmbeddingIsNotNull();
+    
+    /**
+     * Set a configuration parameter for the current transaction only (SET LOCAL)
+     * Used to apply pgvector search settings such as hnsw.ef_search per query
+     */
+    @Query(value = "SELECT set_config(:name, :value, true)", nativeQuery = true)
+    String setLocalConfig(@Param("name") String name, @Param("value") String value);
 }
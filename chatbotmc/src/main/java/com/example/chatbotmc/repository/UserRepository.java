@@ -2,7 +2,11 @@ package com.example.chatbotmc.repository;
 
 import com.example.chatbotmc.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
     Optional<User> findByApprovalToken(String approvalToken);
-}
\ No newline at end of file
+    
+    /**
+     * Increment the query count only while it is below the limit, as one atomic statement
+     * Bulk updates skip @PreUpdate, so updatedAt is set here.
+     * @return 1 if the count was incremented, 0 if the user is missing or at the limit
+     */
+    @Modifying
+    @Query("""
+        UPDATE User u SET u.queryCount = u.queryCount + 1, u.updatedAt = :now
+        WHERE u.id = :id AND u.queryCount < :limit
+        """)
+    int incrementQueryCountIfBelow(@Param("id") Long id, @Param("limit") int limit, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT u.queryCount FROM User u WHERE u.id = :id")
+    Optional<Integer> findQueryCountById(@Param("id") Long id);
+}
@@ -0,0 +1,228 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.util.TokenEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Packs retrieved chunks into the RAG context within a token budget (rag.context.max-tokens)
+ * Chunks are taken in retrieval order, best first. A chunk that is a near-duplicate of one
+ * already packed is skipped, a chunk that no longer fits is cut at a sentence boundary, and
+ * packing stops once too little space is left. Tokens are counted with TokenEstimator, so prompt size
+ * and Gemini input cost stay bounded however long the documents in data.json are.
+ */
+@Component
+public class ContextAssembler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextAssembler.class);
+
+    // Word n-gram size used to compare passages
+    private static final int SHINGLE_SIZE = 3;
+
+    private final int maxTokens;
+    private final int minTruncatedTokens;
+    private final double duplicateThreshold;
+
+    private final LongAdder assemblies = new LongAdder();
+    private final LongAdder totalTokens = new LongAdder();
+    private final AtomicInteger peakTokens = new AtomicInteger();
+    private final LongAdder truncatedChunks = new LongAdder();
+    private final LongAdder duplicateChunks = new LongAdder();
+    private final LongAdder overBudgetChunks = new LongAdder();
+
+    public ContextAssembler(
+            @Value("${rag.context.max-tokens:1500}") int maxTokens,
+            @Value("${rag.context.min-truncated-tokens:40}") int minTruncatedTokens,
+            @Value("${rag.context.duplicate-threshold:0.8}") double duplicateThreshold
+    ) {
+        this.maxTokens = Math.max(1, maxTokens);
+        this.minTruncatedTokens = Math.max(1, minTruncatedTokens);
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    /**
+     * Build the context string from chunks ordered best first
+     */
+    public AssembledContext assemble(List<RetrievedChunk> chunks) {
+        StringBuilder context = new StringBuilder();
+        List<Set<String>> packedShingles = new ArrayList<>();
+        int tokens = 0;
+        int included = 0;
+        int truncated = 0;
+        int duplicates = 0;
+        int overBudget = 0;
+
+        for (int i = 0; i < chunks.size(); i++) {
+            RetrievedChunk chunk = chunks.get(i);
+            String text = chunk.getText() == null ? "" : chunk.getText().strip();
+
+            Set<String> shingles = shingles(text);
+            if (isNearDuplicate(shingles, packedShingles)) {
+                duplicates++;
+                continue;
+            }
+
+            String header = header(chunk, included + 1);
+            int headerTokens = TokenEstimator.estimate(header);
+            int remaining = maxTokens - tokens - headerTokens;
+            int textTokens = TokenEstimator.estimate(text);
+
+            if (textTokens > remaining) {
+                text = remaining >= minTruncatedTokens ? truncateToSentences(text, remaining) : "";
+                if (text.isEmpty()) {
+                    // Neither this chunk nor anything ranked below it is worth the space left
+                    overBudget += chunks.size() - i;
+                    break;
+                }
+                textTokens = TokenEstimator.estimate(text);
+                truncated++;
+            }
+
+            context.append(header).append(text).append("\n\n");
+            tokens += headerTokens + textTokens;
+            packedShingles.add(shingles);
+            included++;
+        }
+
+        record(tokens, truncated, duplicates, overBudget);
+        logger.debug("Assembled RAG context: {} chunks, ~{} tokens ({} truncated, {} duplicates, {} over budget)",
+            included, tokens, truncated, duplicates, overBudget);
+        return new AssembledContext(context.toString(), included, tokens);
+    }
+
+    public ContextStats stats() {
+        long count = assemblies.sum();
+        return new ContextStats(
+            maxTokens,
+            count,
+            count == 0 ? 0.0 : (double) totalTokens.sum() / count,
+            peakTokens.get(),
+            truncatedChunks.sum(),
+            duplicateChunks.sum(),
+            overBudgetChunks.sum()
+        );
+    }
+
+    private void record(int tokens, int truncated, int duplicates, int overBudget) {
+        assemblies.increment();
+        totalTokens.add(tokens);
+        peakTokens.accumulateAndGet(tokens, Math::max);
+        truncatedChunks.add(truncated);
+        duplicateChunks.add(duplicates);
+        overBudgetChunks.add(overBudget);
+    }
+
+    private static String header(RetrievedChunk chunk, int number) {
+        StringBuilder header = new StringBuilder();
+        header.append("--- Document ").append(number).append(" ---\n");
+        if (chunk.getModpack() != null) {
+            header.append("Modpack: ").append(chunk.getModpack()).append("\n");
+        }
+        if (chunk.getModName() != null) {
+            header.append("Mod: ").append(chunk.getModName()).append("\n");
+        }
+        if (chunk.getCategory() != null) {
+            header.append("Category: ").append(chunk.getCategory()).append("\n");
+        }
+        return header.append("\n").toString();
+    }
+
+    /**
+     * Longest run of leading whole sentences within the token budget
+     * When not even the first sentence fits (long lists, tables, text without full stops) the
+     * text is cut at the last word boundary within the budget instead.
+     */
+    static String truncateToSentences(String text, int maxTokens) {
+        String sentences = truncateAt(BreakIterator.getSentenceInstance(Locale.ENGLISH), text, maxTokens);
+        return sentences.isEmpty() ? truncateAt(BreakIterator.getWordInstance(Locale.ENGLISH), text, maxTokens) : sentences;
+    }
+
+    /**
+     * Longest prefix of the text ending on a boundary of the iterator within the token budget
+     */
+    private static String truncateAt(BreakIterator boundaries, String text, int maxTokens) {
+        boundaries.setText(text);
+
+        int end = 0;
+        int tokens = 0;
+        for (int next = boundaries.next(); next != BreakIterator.DONE; next = boundaries.next()) {
+            tokens += TokenEstimator.estimate(text.substring(end, next));
+            if (tokens > maxTokens) {
+                break;
+            }
+            end = next;
+        }
+        return text.substring(0, end).strip();
+    }
+
+    private boolean isNearDuplicate(Set<String> shingles, List<Set<String>> packed) {
+        if (shingles.isEmpty()) {
+            return false;
+        }
+        for (Set<String> other : packed) {
+            if (jaccard(shingles, other) >= duplicateThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lower-cased word n-grams of the text, or its single words if it is shorter than one n-gram
+     */
+    static Set<String> shingles(String text) {
+        String[] words = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        List<String> tokens = new ArrayList<>(words.length);
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                tokens.add(word);
+            }
+        }
+
+        Set<String> shingles = new HashSet<>();
+        if (tokens.size() < SHINGLE_SIZE) {
+            shingles.addAll(tokens);
+            return shingles;
+        }
+        for (int i = 0; i + SHINGLE_SIZE <= tokens.size(); i++) {
+            shingles.add(String.join(" ", tokens.subList(i, i + SHINGLE_SIZE)));
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (String shingle : smaller) {
+            if (larger.contains(shingle)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    /**
+     * @param chunks Number of chunks packed, including a truncated one
+     * @param tokens Estimated tokens of the context
+     */
+    public record AssembledContext(String text, int chunks, int tokens) {}
+
+    /**
+     * @param averageTokens Mean estimated context tokens per assembled prompt
+     */
+    public record ContextStats(int maxTokens, long assemblies, double averageTokens, int peakTokens,
+                               long truncatedChunks, long duplicateChunks, long overBudgetChunks) {}
+}
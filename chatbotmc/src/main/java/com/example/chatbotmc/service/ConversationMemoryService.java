@@ -0,0 +1,222 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.ChatMessageDTO;
+import com.example.chatbotmc.entity.MessageRole;
+import com.example.chatbotmc.llm.LlmClient;
+import com.example.chatbotmc.prompt.PromptBuilder;
+import com.example.chatbotmc.service.ConversationService.ConversationHistory;
+import com.example.chatbotmc.util.TokenEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * What the model sees of a conversation: a rolling summary of older messages plus the
+ * latest turns verbatim
+ * The last chat.memory.recent-turns turns are quoted as they are. Older messages are folded
+ * into Conversation.summary in the background once a full chat.memory.summary-batch-size of
+ * them has built up, so each summarization is one LLM call that only reads the previous
+ * summary and the new messages. Until then they are quoted along with the recent turns.
+ * Summary and quoted messages together stay within chat.memory.max-tokens, so a long
+ * conversation costs a bounded prompt.
+ */
+@Service
+public class ConversationMemoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationMemoryService.class);
+
+    // Below this many tokens a cut-down message is not worth including
+    private static final int MIN_TRUNCATED_TOKENS = 20;
+    // Batches folded per background run; a longer backlog continues on later turns
+    private static final int MAX_BATCHES_PER_RUN = 3;
+    // Cap on the earlier question added to a follow-up's retrieval query
+    private static final int MAX_PREVIOUS_QUESTION_TOKENS = 200;
+
+    private final ConversationService conversationService;
+    private final LlmClient llmClient;
+    private final Scheduler summaryScheduler;
+
+    private final boolean enabled;
+    private final int recentMessages;
+    private final int maxTokens;
+    private final int summaryMaxTokens;
+    private final int summaryBatchSize;
+
+    // Conversations with a summarization running, so turns in quick succession start only one
+    private final Set<Long> summarizing = ConcurrentHashMap.newKeySet();
+
+    public ConversationMemoryService(
+            ConversationService conversationService,
+            LlmClient llmClient,
+            @Qualifier("conversationSummaryScheduler") Scheduler summaryScheduler,
+            @Value("${chat.memory.enabled:true}") boolean enabled,
+            @Value("${chat.memory.recent-turns:4}") int recentTurns,
+            @Value("${chat.memory.max-tokens:1000}") int maxTokens,
+            @Value("${chat.memory.summary-max-tokens:300}") int summaryMaxTokens,
+            @Value("${chat.memory.summary-batch-size:20}") int summaryBatchSize
+    ) {
+        this.conversationService = conversationService;
+        this.llmClient = llmClient;
+        this.summaryScheduler = summaryScheduler;
+        this.enabled = enabled;
+        // A turn is a question and its answer
+        this.recentMessages = Math.max(1, recentTurns) * 2;
+        this.maxTokens = Math.max(1, maxTokens);
+        this.summaryMaxTokens = Math.max(1, Math.min(summaryMaxTokens, this.maxTokens));
+        this.summaryBatchSize = Math.max(1, summaryBatchSize);
+    }
+
+    /**
+     * Conversation before the given message, within the token budget
+     * Starts a background summarization when older messages are waiting to be folded in.
+     *
+     * @param beforeMessageId The question being answered, which is not part of its own history
+     */
+    public ConversationContext load(Long conversationId, Long userId, Long beforeMessageId) {
+        if (!enabled) {
+            return ConversationContext.EMPTY;
+        }
+
+        // A full batch past the verbatim window is worth a summarization; fewer are quoted instead
+        ConversationHistory history = conversationService.getHistory(
+            conversationId, userId, beforeMessageId, recentMessages + summaryBatchSize);
+        List<ChatMessageDTO> newestFirst = history.messages();
+        if (newestFirst.size() >= recentMessages + summaryBatchSize) {
+            summarizeInBackground(conversationId);
+        }
+
+        // Latest earlier question, for retrieving follow-ups; taken before the budget may drop it
+        String previousQuestion = newestFirst.stream()
+            .filter(message -> message.role() == MessageRole.USER)
+            .findFirst()
+            .map(message -> fit(message.content().strip(), MAX_PREVIOUS_QUESTION_TOKENS))
+            .orElse("");
+
+        String summary = fit(history.summary() == null ? "" : history.summary().strip(), summaryMaxTokens);
+        int remaining = maxTokens - TokenEstimator.estimate(summary);
+
+        List<String> lines = new ArrayList<>();
+        for (ChatMessageDTO message : newestFirst) {
+            String line = line(message);
+            int tokens = TokenEstimator.estimate(line);
+            if (tokens > remaining) {
+                // Keep the start of the oldest message that still fits partly, then stop
+                if (remaining >= MIN_TRUNCATED_TOKENS) {
+                    String cut = ContextAssembler.truncateToSentences(line, remaining);
+                    if (!cut.isEmpty()) {
+                        lines.add(cut);
+                    }
+                }
+                break;
+            }
+            lines.add(line);
+            remaining -= tokens;
+        }
+        Collections.reverse(lines);
+
+        return new ConversationContext(summary, lines, previousQuestion);
+    }
+
+    private void summarizeInBackground(Long conversationId) {
+        if (!summarizing.add(conversationId)) {
+            return;
+        }
+        try {
+            summaryScheduler.schedule(() -> {
+                try {
+                    summarize(conversationId);
+                } finally {
+                    summarizing.remove(conversationId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summarizing.remove(conversationId);
+            logger.warn("Could not schedule summarization of conversation {}: {}", conversationId, e.getMessage());
+        }
+    }
+
+    /**
+     * Fold unsummarized messages older than the verbatim window into the summary, in full batches
+     */
+    void summarize(Long conversationId) {
+        try {
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                ConversationHistory history = conversationService.getUnsummarizedMessages(
+                    conversationId, summaryBatchSize + recentMessages);
+                if (history.messages().size() - recentMessages < summaryBatchSize) {
+                    return;
+                }
+
+                List<ChatMessageDTO> folded = history.messages().subList(0, summaryBatchSize);
+                String transcript = folded.stream().map(ConversationMemoryService::line).collect(Collectors.joining("\n"));
+                // Prose runs at about 1.5 tokens per word with TokenEstimator
+                String prompt = PromptBuilder.conversationSummaryPrompt(
+                    history.summary(), transcript, summaryMaxTokens * 2 / 3);
+                String summary = fit(llmClient.generate(prompt).strip(), summaryMaxTokens);
+
+                Long upTo = folded.getLast().id();
+                if (!conversationService.saveSummary(conversationId, summary, upTo, history.summarizedUpTo())) {
+                    // Summarized concurrently (e.g. by another instance); that run carries on
+                    return;
+                }
+                logger.debug("Folded {} messages of conversation {} into its summary", summaryBatchSize, conversationId);
+            }
+        } catch (Exception e) {
+            // The messages stay unsummarized and are retried on a later turn
+            logger.warn("Failed to summarize conversation {}: {}", conversationId, e.getMessage());
+        }
+    }
+
+    private static String line(ChatMessageDTO message) {
+        String speaker = message.role() == MessageRole.USER ? "User" : "Assistant";
+        return speaker + ": " + message.content().strip();
+    }
+
+    private static String fit(String text, int maxTokens) {
+        return TokenEstimator.estimate(text) > maxTokens ? ContextAssembler.truncateToSentences(text, maxTokens) : text;
+    }
+
+    /**
+     * Summary and verbatim messages, oldest first, to put in front of the next question
+     *
+     * @param previousQuestion The user's latest earlier question, empty if there is none
+     */
+    public record ConversationContext(String summary, List<String> recentMessages, String previousQuestion) {
+
+        public static final ConversationContext EMPTY = new ConversationContext("", List.of(), "");
+
+        public boolean isEmpty() {
+            return summary.isEmpty() && recentMessages.isEmpty();
+        }
+
+        /**
+         * Text to retrieve documentation for: a follow-up such as "and the ice one?" names
+         * little on its own, so it is searched together with the question before it
+         */
+        public String retrievalQuery(String userInput) {
+            return previousQuestion.isEmpty() ? userInput : previousQuestion + "\n" + userInput;
+        }
+
+        public String render() {
+            StringBuilder rendered = new StringBuilder();
+            if (!summary.isEmpty()) {
+                rendered.append("Summary of earlier messages:\n").append(summary).append("\n\n");
+            }
+            if (!recentMessages.isEmpty()) {
+                rendered.append("Latest messages:\n").append(String.join("\n", recentMessages));
+            }
+            return rendered.toString().strip();
+        }
+    }
+}
@@ -2,18 +2,26 @@ package com.example.chatbotmc.service;
 
 import com.example.chatbotmc.dto.ChatMessageDTO;
 import com.example.chatbotmc.dto.ConversationDTO;
+import com.example.chatbotmc.dto.MessagePageDTO;
 import com.example.chatbotmc.entity.*;
 import com.example.chatbotmc.repository.*;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 public class ConversationService {
     
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+    
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final UserRepository userRepository;
@@ -40,16 +48,7 @@ public class ConversationService {
     
     @Transactional(readOnly = true)
     public List<ConversationDTO> getUserConversations(Long userId) {
-        return conversationRepository.findByUserIdOrderByUpdatedAtDesc(userId)
-            .stream()
-            .map(conv -> new ConversationDTO(
-                conv.getId(),
-                conv.getTitle(),
-                conv.getCreatedAt(),
-                conv.getUpdatedAt(),
-                conv.getMessages().size()
-            ))
-            .collect(Collectors.toList());
+        return conversationRepository.findSummariesByUserId(userId);
     }
     
     @Transactional(readOnly = true)
@@ -69,6 +68,41 @@ public class ConversationService {
             .collect(Collectors.toList());
     }
     
+    /**
+     * Page through a conversation's messages from newest to oldest with a keyset cursor
+     * Query cost and response size depend on the page size only, not on the thread length.
+     * 
+     * @param cursor nextCursor of the previous page, or null for the newest messages
+     * @param limit page size, capped at 100
+     */
+    @Transactional(readOnly = true)
+    public MessagePageDTO getConversationMessagesPage(Long conversationId, Long userId, String cursor, Integer limit) {
+        conversationRepository.findByIdAndUserId(conversationId, userId)
+            .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // One extra row tells whether another page exists
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        
+        List<ChatMessageDTO> messages;
+        if (cursor == null || cursor.isBlank()) {
+            messages = chatMessageRepository.findLatestPage(conversationId, fetchLimit);
+        } else {
+            MessageCursor position = MessageCursor.decode(cursor);
+            messages = chatMessageRepository.findPageBefore(conversationId, position.createdAt(), position.id(), fetchLimit);
+        }
+        
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = messages.subList(0, pageSize);
+        }
+        
+        ChatMessageDTO last = messages.isEmpty() ? null : messages.get(messages.size() - 1);
+        String nextCursor = hasMore ? new MessageCursor(last.createdAt(), last.id()).encode() : null;
+        
+        return new MessagePageDTO(List.copyOf(messages), nextCursor, hasMore);
+    }
+    
     @Transactional
     public ChatMessage saveMessage(Long conversationId, Long userId, String content, MessageRole role) {
         Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
@@ -88,6 +122,53 @@ public class ConversationService {
         return savedMessage;
     }
     
+    /**
+     * Rolling summary plus the newest messages after it and before the given message, newest
+     * first, for building the model's view of the conversation
+     */
+    @Transactional(readOnly = true)
+    public ConversationHistory getHistory(Long conversationId, Long userId, Long beforeMessageId, int maxMessages) {
+        Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
+            .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        
+        long summarizedUpTo = summarizedUpTo(conversation);
+        List<ChatMessageDTO> messages = chatMessageRepository.findLatestBetween(
+            conversationId, summarizedUpTo, beforeMessageId, Limit.of(maxMessages));
+        
+        return new ConversationHistory(conversation.getSummary(), summarizedUpTo, messages);
+    }
+    
+    /**
+     * Rolling summary plus the oldest messages not folded into it yet, oldest first
+     */
+    @Transactional(readOnly = true)
+    public ConversationHistory getUnsummarizedMessages(Long conversationId, int maxMessages) {
+        Conversation conversation = conversationRepository.findById(conversationId)
+            .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        
+        long summarizedUpTo = summarizedUpTo(conversation);
+        List<ChatMessageDTO> messages = chatMessageRepository.findOldestAfter(
+            conversationId, summarizedUpTo, Limit.of(maxMessages));
+        
+        return new ConversationHistory(conversation.getSummary(), summarizedUpTo, messages);
+    }
+    
+    /**
+     * Store a new rolling summary covering all messages up to upToMessageId
+     * 
+     * @param previousUpToMessageId summarizedUpTo of the history the summary was built from
+     * @return false if the summary was advanced by someone else in the meantime
+     */
+    @Transactional
+    public boolean saveSummary(Long conversationId, String summary, Long upToMessageId, long previousUpToMessageId) {
+        return conversationRepository.updateSummaryIfUnchanged(
+            conversationId, summary, upToMessageId, previousUpToMessageId) == 1;
+    }
+    
+    private static long summarizedUpTo(Conversation conversation) {
+        return conversation.getSummarizedUpToMessageId() != null ? conversation.getSummarizedUpToMessageId() : 0L;
+    }
+    
     @Transactional(readOnly = true)
     public Conversation getConversation(Long conversationId, Long userId) {
         return conversationRepository.findByIdAndUserId(conversationId, userId)
@@ -109,7 +190,38 @@ public class ConversationService {
         conversationRepository.save(conversation);
     }
     
-    @Transactional
+    /**
+     * Rolling summary of a conversation and a slice of the messages after it
+     * 
+     * @param summary null until the conversation has been summarized
+     * @param summarizedUpTo Id of the last message folded into the summary, 0 if none
+     */
+    public record ConversationHistory(String summary, long summarizedUpTo, List<ChatMessageDTO> messages) {}
+    
+    /**
+     * Position of the last message of a page, sent to clients as opaque base64url text
+     */
+    private record MessageCursor(LocalDateTime createdAt, Long id) {
+        
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static MessageCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new MessageCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1))
+                );
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new RuntimeException("Invalid cursor");
+            }
+        }
+    }
+    
     public String generateConversationTitle(String firstMessage) {
         // Generate a title from the first message (max 50 chars)
         if (firstMessage == null || firstMessage.trim().isEmpty()) {
@@ -1,14 +1,31 @@
 package com.example.chatbotmc.service;
 
+import com.example.chatbotmc.exception.LlmUnavailableException;
+import com.example.chatbotmc.llm.Embedding;
+import com.example.chatbotmc.llm.gemini.GeminiCallPolicy;
+import com.example.chatbotmc.llm.gemini.GeminiEmbeddingResponse;
+import com.example.chatbotmc.util.BoundedCache;
+import com.example.chatbotmc.util.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * Service for generating text embeddings using Google Gemini Embedding API
@@ -18,106 +35,270 @@ public class EmbeddingService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmbeddingService.class);
     
+    private static final String EMBEDDING_MODEL = "text-embedding-004";
+    
+    // Gemini rejects batchEmbedContents calls with more than 100 requests
+    private static final int MAX_BATCH_SIZE = 100;
+    
+    private static final int MAX_TEXT_LENGTH = 10000;
+    
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
     private final WebClient webClient;
     private final String apiKey;
+    private final GeminiCallPolicy callPolicy;
+    private final int batchSize;
+    private final int maxConcurrency;
+    
+    // Query embeddings keyed on normalized query text
+    private final BoundedCache<String, Embedding> queryCache;
+    
+    // Concurrent cache misses for the same normalized query share one embedContent call
+    private final SingleFlight<String, Embedding> queryFlights = new SingleFlight<>();
     
     public EmbeddingService(
             WebClient geminiWebClient,
-            @Value("${gemini.api-key}") String apiKey
+            @Value("${gemini.api-key}") String apiKey,
+            @Qualifier("geminiEmbeddingPolicy") GeminiCallPolicy callPolicy,
+            @Value("${rag.embedding-batch-size:100}") int batchSize,
+            @Value("${rag.embedding-max-concurrency:4}") int maxConcurrency,
+            @Value("${rag.query-cache.max-size:1000}") int queryCacheMaxSize,
+            @Value("${rag.query-cache.ttl-minutes:60}") long queryCacheTtlMinutes
     ) {
         this.webClient = geminiWebClient;
         this.apiKey = apiKey;
+        this.callPolicy = callPolicy;
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.queryCache = new BoundedCache<>(queryCacheMaxSize, Duration.ofMinutes(queryCacheTtlMinutes));
+    }
+    
+    /**
+     * Generate embedding for a user query, served from the in-process cache when
+     * the same normalized query was embedded recently
+     * Failed embeddings are not cached.
+     */
+    public Embedding generateQueryEmbedding(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            logger.warn("Empty query provided for embedding generation");
+            return null;
+        }
+        
+        return generateQueryEmbeddingAsync(query).block();
+    }
+    
+    /**
+     * Non-blocking variant of generateQueryEmbedding
+     * Completes empty when the query is blank or the embedding request fails.
+     */
+    public Mono<Embedding> generateQueryEmbeddingAsync(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            logger.warn("Empty query provided for embedding generation");
+            return Mono.empty();
+        }
+        
+        String key = normalizeQuery(query);
+        Embedding cached = queryCache.get(key);
+        if (cached != null) {
+            logger.debug("Query embedding cache hit");
+            return Mono.just(cached);
+        }
+        
+        // Only the cache key is normalized; the query is embedded as typed, since case and
+        // spacing can matter for mod ids and item names
+        return queryFlights.executeAsync(key, () -> embedContent(query.strip())
+                .doOnNext(embedding -> queryCache.put(key, embedding)));
+    }
+    
+    /**
+     * Get query embedding cache counters
+     */
+    public BoundedCache.Stats getQueryCacheStats() {
+        return queryCache.stats();
+    }
+    
+    /**
+     * Get counters of query embedding calls collapsed into an identical in-flight call
+     */
+    public SingleFlight.Stats getQueryCoalescingStats() {
+        return queryFlights.stats();
     }
     
     /**
      * Generate embedding vector for a given text using Gemini text-embedding-004 model
      * Returns a 768-dimensional vector
      */
-    public List<Double> generateEmbedding(String text) {
-        try {
-            if (text == null || text.trim().isEmpty()) {
-                logger.warn("Empty text provided for embedding generation");
-                return null;
-            }
-            
-            // Truncate text if too long (Gemini has input limits)
-            String truncatedText = text.length() > 10000 ? text.substring(0, 10000) : text;
-            
-            // Build request body
-            Map<String, Object> requestBody = Map.of(
-                "content", Map.of(
-                    "parts", List.of(
-                        Map.of("text", truncatedText)
-                    )
-                )
-            );
-            
-            // Call Gemini embedding API
-            Map<String, Object> response = webClient.post()
-                    .uri("/v1beta/models/text-embedding-004:embedContent?key=" + apiKey)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                    .block();
-            
-            return extractEmbedding(response);
-            
-        } catch (Exception e) {
-            logger.error("Failed to generate embedding: {}", e.getMessage(), e);
+    public Embedding generateEmbedding(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            logger.warn("Empty text provided for embedding generation");
             return null;
         }
+        
+        return embedContent(text).block();
     }
     
     /**
-     * Generate embeddings for multiple texts in batch
-     * Note: Currently processes sequentially. For production, consider batching API calls.
+     * Call embedContent for one text
+     * Never errors: completes empty when the request fails or the response has no embedding.
+     * That includes an open embedding circuit, so chat falls back to a prompt without RAG context.
      */
-    public List<List<Double>> generateEmbeddings(List<String> texts) {
-        return texts.stream()
-                .map(this::generateEmbedding)
-                .toList();
+    private Mono<Embedding> embedContent(String text) {
+        // Build request body, truncating text if too long
+        Map<String, Object> requestBody = Map.of(
+            "content", Map.of(
+                "parts", List.of(
+                    Map.of("text", truncate(text))
+                )
+            )
+        );
+        
+        // Call Gemini embedding API
+        return callPolicy.apply(() -> webClient.post()
+                .uri("/v1beta/models/" + EMBEDDING_MODEL + ":embedContent?key=" + apiKey)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(GeminiEmbeddingResponse.class))
+                .mapNotNull(response -> {
+                    if (response.embedding() == null) {
+                        logger.error("No embedding values in response");
+                        return null;
+                    }
+                    logger.debug("Generated embedding with {} dimensions", response.embedding().dimensions());
+                    return response.embedding();
+                })
+                .onErrorResume(e -> {
+                    if (e instanceof LlmUnavailableException) {
+                        logger.warn("Embedding unavailable: {}", e.getMessage());
+                    } else {
+                        logger.error("Failed to generate embedding: {}", e.getMessage(), e);
+                    }
+                    return Mono.empty();
+                });
     }
     
     /**
-     * Extract embedding vector from Gemini API response
+     * Generate embeddings for multiple texts using Gemini batchEmbedContents
+     * Texts are packed into requests of up to rag.embedding-batch-size items and
+     * at most rag.embedding-max-concurrency requests are in flight at once.
+     * 
+     * @return One entry per input text, in input order. An entry is null when that
+     *         text was empty or its batch request failed.
      */
-    @SuppressWarnings("unchecked")
-    private List<Double> extractEmbedding(Map<String, Object> response) {
-        try {
-            Map<String, Object> embedding = (Map<String, Object>) response.get("embedding");
-            List<Double> values = (List<Double>) embedding.get("values");
-            
-            if (values == null || values.isEmpty()) {
-                logger.error("No embedding values in response");
-                return null;
+    public List<Embedding> generateEmbeddings(List<String> texts) {
+        if (texts == null || texts.isEmpty()) {
+            return List.of();
+        }
+        
+        List<Embedding> results = new ArrayList<>(texts.size());
+        List<Integer> validIndexes = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            results.add(null);
+            String text = texts.get(i);
+            if (text == null || text.trim().isEmpty()) {
+                logger.warn("Empty text at index {} skipped for batch embedding", i);
+            } else {
+                validIndexes.add(i);
             }
-            
-            logger.debug("Generated embedding with {} dimensions", values.size());
-            return values;
-            
-        } catch (Exception e) {
-            logger.error("Failed to extract embedding from response: {}", e.getMessage());
-            return null;
         }
+        
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int i = 0; i < validIndexes.size(); i += batchSize) {
+            batches.add(validIndexes.subList(i, Math.min(i + batchSize, validIndexes.size())));
+        }
+        
+        logger.debug("Embedding {} texts in {} batch requests (max {} concurrent)",
+            validIndexes.size(), batches.size(), maxConcurrency);
+        
+        // flatMapSequential keeps batch order while still running requests concurrently
+        List<List<Embedding>> batchResults = Flux.fromIterable(batches)
+                .flatMapSequential(batch -> batchEmbed(batch.stream().map(texts::get).toList()), maxConcurrency)
+                .collectList()
+                .block();
+        
+        for (int b = 0; b < batches.size(); b++) {
+            List<Integer> batch = batches.get(b);
+            List<Embedding> embeddings = batchResults.get(b);
+            for (int i = 0; i < batch.size(); i++) {
+                results.set(batch.get(i), embeddings.get(i));
+            }
+        }
+        
+        return results;
     }
     
     /**
-     * Convert embedding vector to pgvector format string
-     * Example: [0.1, 0.2, 0.3] -> "[0.1,0.2,0.3]"
+     * Call batchEmbedContents for one batch of texts
+     * Never errors: a failed request yields a null embedding for every text in the batch
      */
-    public String embeddingToVectorString(List<Double> embedding) {
-        if (embedding == null || embedding.isEmpty()) {
-            return null;
+    private Mono<List<Embedding>> batchEmbed(List<String> texts) {
+        List<Map<String, Object>> requests = texts.stream()
+                .map(text -> Map.<String, Object>of(
+                    "model", "models/" + EMBEDDING_MODEL,
+                    "content", Map.of(
+                        "parts", List.of(
+                            Map.of("text", truncate(text))
+                        )
+                    )
+                ))
+                .toList();
+        
+        return callPolicy.apply(() -> webClient.post()
+                .uri("/v1beta/models/" + EMBEDDING_MODEL + ":batchEmbedContents?key=" + apiKey)
+                .bodyValue(Map.of("requests", requests))
+                .retrieve()
+                .bodyToMono(GeminiEmbeddingResponse.Batch.class))
+                .map(response -> extractBatchEmbeddings(response, texts.size()))
+                .onErrorResume(e -> {
+                    logger.error("Batch embedding request for {} texts failed: {}", texts.size(), e.getMessage());
+                    return Mono.just(nullEmbeddings(texts.size()));
+                });
+    }
+    
+    /**
+     * Check a batchEmbedContents response against the request size
+     * The response lists embeddings in the same order as the requests
+     */
+    private List<Embedding> extractBatchEmbeddings(GeminiEmbeddingResponse.Batch response, int expectedCount) {
+        List<Embedding> embeddings = response.embeddings();
+        
+        if (embeddings == null || embeddings.size() != expectedCount) {
+            logger.error("Expected {} embeddings in batch response but got {}",
+                expectedCount, embeddings == null ? 0 : embeddings.size());
+            return nullEmbeddings(expectedCount);
         }
         
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < embedding.size(); i++) {
-            sb.append(embedding.get(i));
-            if (i < embedding.size() - 1) {
-                sb.append(",");
-            }
+        return embeddings;
+    }
+    
+    private List<Embedding> nullEmbeddings(int count) {
+        return Collections.nCopies(count, null);
+    }
+    
+    /**
+     * Hash identifying the embedding of a text: SHA-256 over the model id and the text
+     * Equal hashes mean a stored embedding can be reused as is.
+     */
+    public String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(EMBEDDING_MODEL.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        sb.append("]");
-        return sb.toString();
+    }
+    
+    /**
+     * Trim, collapse whitespace and case-fold a query so trivial variants share a cache entry
+     */
+    static String normalizeQuery(String query) {
+        return WHITESPACE.matcher(query.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+    
+    private String truncate(String text) {
+        // Gemini has input limits
+        return text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text;
     }
 }
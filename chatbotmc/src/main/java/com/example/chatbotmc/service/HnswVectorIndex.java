@@ -0,0 +1,221 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.RagChunkVector;
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.llm.Embedding;
+import com.example.chatbotmc.repository.RagChunkRepository;
+import com.example.chatbotmc.util.HnswGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-process HNSW index over the chunk embeddings
+ * Nearest neighbour search runs in memory and only returns chunk ids; Postgres is then
+ * hit with a primary-key fetch for the top-k rows. The graph is loaded from rag_chunk at
+ * startup and updated from RagCorpusChangedEvent after each data sync.
+ */
+@Service
+@ConditionalOnProperty(name = "rag.index.backend", havingValue = "hnsw")
+public class HnswVectorIndex implements VectorIndex, ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(HnswVectorIndex.class);
+
+    // Rebuild instead of patching once this share of nodes are tombstones
+    private static final double MAX_DELETED_RATIO = 0.2;
+
+    private final RagChunkRepository ragChunkRepository;
+
+    @Value("${rag.index.hnsw-m:16}")
+    private int m;
+
+    @Value("${rag.index.hnsw-ef-construction:64}")
+    private int efConstruction;
+
+    @Value("${rag.index.ef-search:40}")
+    private int efSearch;
+
+    // Serializes reloads and incremental updates
+    private final ReentrantLock updateLock = new ReentrantLock();
+    // Guards the graph: searches share it, updates and swaps are exclusive
+    private final ReentrantReadWriteLock graphLock = new ReentrantReadWriteLock();
+
+    private Graph graph;
+
+    public HnswVectorIndex(RagChunkRepository ragChunkRepository) {
+        this.ragChunkRepository = ragChunkRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        reload();
+    }
+
+    /**
+     * Rebuild the graph from all embedded chunks in rag_chunk
+     * Searches keep using the previous graph until the new one is swapped in.
+     */
+    public void reload() {
+        updateLock.lock();
+        try {
+            long start = System.nanoTime();
+            Graph fresh = new Graph(new HnswGraph(m, efConstruction, 42));
+            for (RagChunkVector vector : ragChunkRepository.findAllVectors()) {
+                fresh.add(vector);
+            }
+
+            graphLock.writeLock().lock();
+            try {
+                graph = fresh;
+            } finally {
+                graphLock.writeLock().unlock();
+            }
+
+            logger.info("Built HNSW index with {} chunks in {} ms",
+                fresh.nodeByChunkId.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Apply a data sync to the graph
+     * Changed chunks are tombstoned and re-inserted; the graph is rebuilt once too many
+     * tombstones accumulate, since they still cost traversal time.
+     */
+    @EventListener
+    public void onCorpusChanged(RagCorpusChangedEvent event) {
+        updateLock.lock();
+        try {
+            if (graph == null) {
+                reload();
+                return;
+            }
+
+            long newTombstones = Stream.concat(event.removedIds().stream(), event.upsertedIds().stream())
+                .filter(graph.nodeByChunkId::containsKey)
+                .count();
+            if (graph.hnsw.deletedCount() + newTombstones > graph.hnsw.size() * MAX_DELETED_RATIO) {
+                reload();
+                return;
+            }
+
+            List<RagChunkVector> vectors = event.upsertedIds().isEmpty()
+                ? List.of()
+                : ragChunkRepository.findVectorsByIdIn(event.upsertedIds());
+
+            graphLock.writeLock().lock();
+            try {
+                event.removedIds().forEach(graph::remove);
+                event.upsertedIds().forEach(graph::remove);
+                vectors.forEach(graph::add);
+            } finally {
+                graphLock.writeLock().unlock();
+            }
+
+            logger.info("Updated HNSW index: {} upserted, {} removed", vectors.size(), event.removedIds().size());
+        } catch (Exception e) {
+            logger.error("Failed to update HNSW index, rebuilding: {}", e.getMessage(), e);
+            reload();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public List<RetrievedChunk> search(Embedding query, String modpack, int topK) {
+        Map<Long, Float> distances = new LinkedHashMap<>();
+
+        graphLock.readLock().lock();
+        try {
+            if (graph == null) {
+                return List.of();
+            }
+            Graph current = graph;
+            current.hnsw.search(
+                    query.values(),
+                    topK,
+                    Math.max(efSearch, topK),
+                    node -> modpack == null || modpack.equals(current.modpackByNode.get(node))
+                )
+                .forEach(neighbor -> distances.put(current.chunkIdByNode.get(neighbor.node()), neighbor.distance()));
+        } finally {
+            graphLock.readLock().unlock();
+        }
+
+        if (distances.isEmpty()) {
+            return List.of();
+        }
+
+        // The fetch does not keep the id order, so restore the ranking
+        Map<Long, RetrievedChunk> chunks = ragChunkRepository.findRetrievedByIdIn(distances.keySet()).stream()
+            .collect(Collectors.toMap(RetrievedChunk::getId, Function.identity()));
+        return distances.entrySet().stream()
+            .filter(entry -> chunks.containsKey(entry.getKey()))
+            .<RetrievedChunk>map(entry -> new Hit(chunks.get(entry.getKey()), entry.getValue().doubleValue()))
+            .toList();
+    }
+
+    /**
+     * Fetched chunk with the distance computed by the graph
+     */
+    private record Hit(RetrievedChunk chunk, Double distance) implements RetrievedChunk {
+        @Override public Long getId() { return chunk.getId(); }
+        @Override public String getChunkId() { return chunk.getChunkId(); }
+        @Override public String getText() { return chunk.getText(); }
+        @Override public String getModpack() { return chunk.getModpack(); }
+        @Override public String getModName() { return chunk.getModName(); }
+        @Override public String getModVersion() { return chunk.getModVersion(); }
+        @Override public String getCategory() { return chunk.getCategory(); }
+        @Override public String getDocType() { return chunk.getDocType(); }
+        @Override public String getLanguage() { return chunk.getLanguage(); }
+        @Override public Double getDistance() { return distance; }
+        @Override public Integer getMatchedTerms() { return null; }
+        @Override public Integer getQueryTerms() { return null; }
+    }
+
+    /**
+     * HNSW graph plus the mapping between graph nodes and rag_chunk rows
+     */
+    private static final class Graph {
+
+        private final HnswGraph hnsw;
+        private final Map<Long, Integer> nodeByChunkId = new HashMap<>();
+        private final List<Long> chunkIdByNode = new ArrayList<>();
+        private final List<String> modpackByNode = new ArrayList<>();
+
+        private Graph(HnswGraph hnsw) {
+            this.hnsw = hnsw;
+        }
+
+        private void add(RagChunkVector vector) {
+            int node = hnsw.add(vector.getEmbedding().values());
+            chunkIdByNode.add(vector.getId());
+            modpackByNode.add(vector.getModpack());
+            nodeByChunkId.put(vector.getId(), node);
+        }
+
+        private void remove(Long chunkId) {
+            Integer node = nodeByChunkId.remove(chunkId);
+            if (node != null) {
+                hnsw.markDeleted(node);
+            }
+        }
+    }
+}
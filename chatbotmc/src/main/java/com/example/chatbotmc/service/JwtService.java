@@ -1,21 +1,41 @@
 package com.example.chatbotmc.service;
 
+import com.example.chatbotmc.config.AuthenticatedUser;
 import com.example.chatbotmc.entity.User;
+import com.example.chatbotmc.util.BoundedCache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import javax.crypto.SecretKey;
+import java.time.Duration;
 import java.util.Date;
 
 @Service
 public class JwtService {
     
-    @Value("${jwt.secret}")
-    private String secret;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final long expiration;
     
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    // Tokens that already passed signature verification, keyed by the token itself
+    private final BoundedCache<String, VerifiedToken> verifiedTokens;
+    
+    public JwtService(
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.expiration}") long expiration,
+            @Value("${jwt.cache.enabled:true}") boolean cacheEnabled,
+            @Value("${jwt.cache.max-size:10000}") int cacheMaxSize,
+            @Value("${jwt.cache.ttl-seconds:60}") long cacheTtlSeconds
+    ) {
+        // Key and parser are immutable and thread-safe, so build them once
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.expiration = expiration;
+        this.verifiedTokens = cacheEnabled
+            ? new BoundedCache<>(cacheMaxSize, Duration.ofSeconds(cacheTtlSeconds))
+            : null;
+    }
     
     public String generateToken(User user) {
         return Jwts.builder()
@@ -24,40 +44,41 @@ public class JwtService {
             .claim("role", user.getRole())
             .issuedAt(new Date())
             .expiration(new Date(System.currentTimeMillis() + expiration))
-            .signWith(getSigningKey())
+            .signWith(signingKey)
             .compact();
     }
     
-    public String extractUsername(String token) {
-        return getClaims(token).getSubject();
-    }
-    
-    public Long extractUserId(String token) {
-        return getClaims(token).get("userId", Long.class);
-    }
-    
-    public String extractRole(String token) {
-        return getClaims(token).get("role", String.class);
-    }
-    
-    public boolean validateToken(String token) {
-        try {
-            getClaims(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
+    /**
+     * Verify a token and read its claims in one pass
+     * Recently verified tokens are served from a short-lived cache, but never past their expiry.
+     * 
+     * @throws JwtException if the token is malformed, has a bad signature or is expired
+     */
+    public AuthenticatedUser parseToken(String token) {
+        if (verifiedTokens != null) {
+            VerifiedToken cached = verifiedTokens.get(token);
+            if (cached != null) {
+                if (cached.expiresAtMillis() > System.currentTimeMillis()) {
+                    return cached.user();
+                }
+                verifiedTokens.invalidate(token);
+                throw new ExpiredJwtException(null, null, "JWT expired");
+            }
         }
+        
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        AuthenticatedUser user = new AuthenticatedUser(
+            claims.get("userId", Long.class),
+            claims.getSubject(),
+            claims.get("role", String.class)
+        );
+        
+        if (verifiedTokens != null) {
+            Date expiresAt = claims.getExpiration();
+            verifiedTokens.put(token, new VerifiedToken(user, expiresAt != null ? expiresAt.getTime() : Long.MAX_VALUE));
+        }
+        return user;
     }
     
-    private Claims getClaims(String token) {
-        return Jwts.parser()
-            .verifyWith(getSigningKey())
-            .build()
-            .parseSignedClaims(token)
-            .getPayload();
-    }
-    
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
-    }
-}
\ No newline at end of file
+    private record VerifiedToken(AuthenticatedUser user, long expiresAtMillis) {}
+}
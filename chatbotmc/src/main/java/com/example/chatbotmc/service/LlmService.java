@@ -1,15 +1,22 @@
 package com.example.chatbotmc.service;
 
 import com.example.chatbotmc.dto.ChatResponse;
+import com.example.chatbotmc.dto.ChatStreamEvent;
+import com.example.chatbotmc.dto.RetrievedChunk;
 import com.example.chatbotmc.entity.Conversation;
 import com.example.chatbotmc.entity.MessageRole;
-import com.example.chatbotmc.entity.RagChunk;
+import com.example.chatbotmc.llm.Embedding;
 import com.example.chatbotmc.llm.LlmClient;
 import com.example.chatbotmc.prompt.PromptBuilder;
+import com.example.chatbotmc.service.ConversationMemoryService.ConversationContext;
+import com.example.chatbotmc.util.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 
@@ -21,74 +28,252 @@ public class LlmService {
     private final LlmClient llmClient;
     private final ConversationService conversationService;
     private final RagService ragService;
+    private final EmbeddingService embeddingService;
+    private final SemanticAnswerCache answerCache;
+    private final ConversationMemoryService conversationMemory;
+    
+    // Identical prompts generated concurrently (e.g. a chat raid asking the same question) share one call
+    private final SingleFlight<String, String> generationFlights = new SingleFlight<>();
 
-    public LlmService(LlmClient llmClient, ConversationService conversationService, RagService ragService) {
+    public LlmService(LlmClient llmClient,
+                      ConversationService conversationService,
+                      RagService ragService,
+                      EmbeddingService embeddingService,
+                      SemanticAnswerCache answerCache,
+                      ConversationMemoryService conversationMemory) {
         this.llmClient = llmClient;
         this.conversationService = conversationService;
         this.ragService = ragService;
+        this.embeddingService = embeddingService;
+        this.answerCache = answerCache;
+        this.conversationMemory = conversationMemory;
     }
 
     /**
      * Simple chat without conversation history (uses RAG if available)
      */
     public String chat(String userInput) {
-        String prompt = generatePromptWithRag(userInput);
-        return llmClient.generate(prompt);
+        return generateAnswer(prepareTurn(userInput, ConversationContext.EMPTY));
     }
 
     /**
      * Chat with conversation history and RAG support
+     * The prompt carries the conversation so far, see ConversationMemoryService.
+     * Deliberately not transactional: the user and assistant messages are saved in their own
+     * short transactions, so no database connection is held during retrieval and generation.
      */
-    @Transactional
     public ChatResponse chatWithHistory(Long userId, String userInput, Long conversationId) {
-        // Create new conversation if none provided
+        SavedQuestion question = saveUserMessage(userId, userInput, conversationId);
+        
+        // Generate AI response with RAG, outside any transaction
+        String aiResponse = generateAnswer(prepareTurn(userInput, loadHistory(userId, question)));
+        
+        return saveAnswer(userId, question.conversationId(), aiResponse);
+    }
+    
+    /**
+     * Chat with conversation history and RAG support, streaming the answer as it is generated
+     * The user message is saved before this returns, so an unknown conversation fails the
+     * request up front. The assembled assistant message is saved once the model finishes and
+     * reported in the final event; nothing is saved if the stream errors or is cancelled.
+     */
+    public Flux<ChatStreamEvent> streamChatWithHistory(Long userId, String userInput, Long conversationId) {
+        SavedQuestion question = saveUserMessage(userId, userInput, conversationId);
+        
+        // Retrieval and persistence block, so keep them off the thread that writes the stream
+        return Mono.fromCallable(() -> prepareTurn(userInput, loadHistory(userId, question)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(turn -> streamTurn(turn, userId, question.conversationId(), Schedulers.boundedElastic()));
+    }
+    
+    /**
+     * Stream the answer for a prepared turn, then save it and end with the done event
+     * 
+     * @param dbScheduler Where the blocking save of the assistant message runs
+     */
+    Flux<ChatStreamEvent> streamTurn(PreparedTurn turn, Long userId, Long conversationId, Scheduler dbScheduler) {
+        StringBuilder answer = new StringBuilder();
+        
+        // A cached answer is sent as a single chunk
+        Flux<String> chunks = turn.cachedAnswer() != null
+            ? Flux.just(turn.cachedAnswer())
+            : llmClient.stream(turn.prompt());
+        
+        Flux<ChatStreamEvent> deltas = chunks
+            .doOnNext(answer::append)
+            .map(ChatStreamEvent::delta);
+        
+        Mono<ChatStreamEvent> done = Mono.fromCallable(() -> {
+                String aiResponse = answer.toString();
+                if (turn.cachedAnswer() == null) {
+                    cacheAnswer(turn, aiResponse);
+                }
+                return ChatStreamEvent.done(saveAnswer(userId, conversationId, aiResponse));
+            })
+            .subscribeOn(dbScheduler);
+        
+        return deltas.concatWith(done);
+    }
+    
+    /**
+     * Create the conversation if none is given and save the user message
+     */
+    SavedQuestion saveUserMessage(Long userId, String userInput, Long conversationId) {
         if (conversationId == null) {
             String title = conversationService.generateConversationTitle(userInput);
             Conversation newConversation = conversationService.createConversation(userId, title);
             conversationId = newConversation.getId();
         }
         
-        // Save user message
-        conversationService.saveMessage(conversationId, userId, userInput, MessageRole.USER);
+        var savedMessage = conversationService.saveMessage(conversationId, userId, userInput, MessageRole.USER);
+        return new SavedQuestion(conversationId, savedMessage.getId());
+    }
+    
+    /**
+     * Conversation leading up to a saved question
+     */
+    ConversationContext loadHistory(Long userId, SavedQuestion question) {
+        return conversationMemory.load(question.conversationId(), userId, question.messageId());
+    }
+    
+    /**
+     * Save the assistant message
+     */
+    ChatResponse saveAnswer(Long userId, Long conversationId, String aiResponse) {
+        var savedMessage = conversationService.saveMessage(conversationId, userId, aiResponse, MessageRole.ASSISTANT);
+        return new ChatResponse(aiResponse, conversationId, savedMessage.getId());
+    }
+    
+    /**
+     * Whether prepareTurn uses the question embedding (answer cache or RAG)
+     */
+    boolean needsQueryEmbedding() {
+        return answerCache.isEnabled() || ragService.isEnabled();
+    }
+    
+    /**
+     * Embed the question once, then either find a cached answer for it or build the RAG prompt
+     * from the same embedding
+     * A follow-up is embedded together with the question before it, see
+     * ConversationContext.retrievalQuery.
+     */
+    private PreparedTurn prepareTurn(String userInput, ConversationContext history) {
+        Embedding queryEmbedding = null;
+        if (needsQueryEmbedding()) {
+            queryEmbedding = embeddingService.generateQueryEmbedding(history.retrievalQuery(userInput));
+        }
+        return prepareTurn(userInput, queryEmbedding, history);
+    }
+    
+    /**
+     * Find a cached answer for an already embedded question, or build its prompt
+     * A question asked within a conversation may depend on it ("and the ice one?"), so it
+     * neither reads from nor adds to the answer cache.
+     * Retrieval reads the database, so this blocks.
+     * 
+     * @param queryEmbedding Embedding of history.retrievalQuery(userInput), or null if unavailable
+     */
+    PreparedTurn prepareTurn(String userInput, Embedding queryEmbedding, ConversationContext history) {
+        if (!history.isEmpty()) {
+            return new PreparedTurn(null, null, generatePromptWithRag(
+                userInput, history.retrievalQuery(userInput), queryEmbedding, history.render()));
+        }
+        
+        String cachedAnswer = answerCache.find(queryEmbedding, null);
+        if (cachedAnswer != null) {
+            logger.info("Answering from semantic answer cache");
+            return new PreparedTurn(queryEmbedding, cachedAnswer, null);
+        }
         
-        // Generate AI response with RAG
-        String prompt = generatePromptWithRag(userInput);
-        String aiResponse = llmClient.generate(prompt);
+        return new PreparedTurn(queryEmbedding, null, generatePromptWithRag(userInput, userInput, queryEmbedding, ""));
+    }
+    
+    /**
+     * Return the cached answer, or generate one and cache it
+     */
+    private String generateAnswer(PreparedTurn turn) {
+        if (turn.cachedAnswer() != null) {
+            return turn.cachedAnswer();
+        }
         
-        // Save AI message
-        var savedMessage = conversationService.saveMessage(conversationId, userId, aiResponse, MessageRole.ASSISTANT);
+        return generationFlights.execute(turn.prompt(), () -> {
+            String aiResponse = llmClient.generate(turn.prompt());
+            cacheAnswer(turn, aiResponse);
+            return aiResponse;
+        });
+    }
+    
+    /**
+     * Non-blocking variant of generateAnswer
+     */
+    Mono<String> generateAnswerAsync(PreparedTurn turn) {
+        if (turn.cachedAnswer() != null) {
+            return Mono.just(turn.cachedAnswer());
+        }
         
-        return new ChatResponse(aiResponse, conversationId, savedMessage.getId());
+        return generationFlights.executeAsync(turn.prompt(), () -> llmClient.generateAsync(turn.prompt())
+                .doOnNext(aiResponse -> cacheAnswer(turn, aiResponse)));
+    }
+    
+    /**
+     * Get counters of generate calls collapsed into an identical in-flight call
+     * Streamed answers are not coalesced.
+     */
+    public SingleFlight.Stats getGenerationCoalescingStats() {
+        return generationFlights.stats();
+    }
+    
+    void cacheAnswer(PreparedTurn turn, String aiResponse) {
+        answerCache.put(turn.queryEmbedding(), null, aiResponse);
     }
     
     /**
      * Generate prompt with RAG context if available, otherwise use fallback
+     * 
+     * @param retrievalQuery What to search the documentation for, see ConversationContext.retrievalQuery
      */
-    private String generatePromptWithRag(String userInput) {
+    private String generatePromptWithRag(String userInput, String retrievalQuery, Embedding queryEmbedding,
+                                         String history) {
         try {
             // Check if RAG is available
             if (!ragService.isRagAvailable()) {
                 logger.debug("RAG not available, using fallback prompt");
-                return PromptBuilder.minecraftPrompt(userInput);
+                return PromptBuilder.minecraftPrompt(userInput, history);
+            }
+            
+            if (queryEmbedding == null) {
+                logger.warn("Failed to generate embedding for query, retrieving by text only");
             }
             
             // Retrieve relevant chunks using RAG
             logger.debug("Retrieving RAG context for user input");
-            List<RagChunk> relevantChunks = ragService.retrieveRelevantChunks(userInput);
+            List<RetrievedChunk> relevantChunks = ragService.retrieveRelevantChunks(retrievalQuery, queryEmbedding);
             
             if (relevantChunks.isEmpty()) {
                 logger.debug("No relevant chunks found, using fallback prompt");
-                return PromptBuilder.minecraftPrompt(userInput);
+                return PromptBuilder.minecraftPrompt(userInput, history);
             }
             
             logger.info("Found {} relevant chunks for RAG context", relevantChunks.size());
             
             // Build augmented prompt with RAG context
-            return ragService.buildAugmentedPrompt(userInput, relevantChunks);
+            return ragService.buildAugmentedPrompt(userInput, relevantChunks, history);
             
         } catch (Exception e) {
             logger.error("Error generating RAG prompt, falling back to standard prompt: {}", e.getMessage());
-            return PromptBuilder.minecraftPrompt(userInput);
+            return PromptBuilder.minecraftPrompt(userInput, history);
         }
     }
+    
+    /**
+     * Question embedding plus either a cached answer or the prompt to generate one
+     * 
+     * @param queryEmbedding Key the answer is cached under, null if it must not be cached
+     */
+    record PreparedTurn(Embedding queryEmbedding, String cachedAnswer, String prompt) {}
+    
+    /**
+     * A saved user message and the conversation it belongs to
+     */
+    record SavedQuestion(Long conversationId, Long messageId) {}
 }
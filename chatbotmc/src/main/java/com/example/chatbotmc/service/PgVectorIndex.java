@@ -0,0 +1,53 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.llm.Embedding;
+import com.example.chatbotmc.repository.RagChunkRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Runs pgvector similarity queries with the ANN search setting applied per query
+ * The setting is set with set_config(..., is_local = true), which only lasts for the
+ * surrounding transaction, so each search runs in its own short read-only transaction.
+ */
+@Service
+@ConditionalOnProperty(name = "rag.index.backend", havingValue = "pgvector", matchIfMissing = true)
+public class PgVectorIndex implements VectorIndex {
+
+    private final RagChunkRepository ragChunkRepository;
+    private final VectorIndexManager vectorIndexManager;
+    
+    public PgVectorIndex(RagChunkRepository ragChunkRepository, VectorIndexManager vectorIndexManager) {
+        this.ragChunkRepository = ragChunkRepository;
+        this.vectorIndexManager = vectorIndexManager;
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<RetrievedChunk> search(Embedding query, String modpack, int topK) {
+        ragChunkRepository.setLocalConfig(
+            vectorIndexManager.searchSettingName(),
+            vectorIndexManager.searchSettingValue(topK)
+        );
+        
+        if (modpack == null) {
+            return ragChunkRepository.findSimilarByEmbedding(query, topK);
+        }
+        return ragChunkRepository.findSimilarByEmbeddingAndModpack(query, modpack, topK);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<RetrievedChunk> search(Embedding query, String modpack, int topK, double minSimilarity) {
+        ragChunkRepository.setLocalConfig(
+            vectorIndexManager.searchSettingName(),
+            vectorIndexManager.searchSettingValue(topK)
+        );
+        
+        return ragChunkRepository.findSimilarAboveThreshold(query, modpack, minSimilarity, topK);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.chatbotmc.service;
+
+import java.util.Set;
+
+/**
+ * Published after a RAG data sync changed rag_chunk rows
+ * 
+ * @param upsertedIds Rows that were inserted or whose embedding or metadata changed
+ * @param removedIds Rows that were deleted
+ */
+public record RagCorpusChangedEvent(Set<Long> upsertedIds, Set<Long> removedIds) {
+    
+    public RagCorpusChangedEvent {
+        upsertedIds = Set.copyOf(upsertedIds);
+        removedIds = Set.copyOf(removedIds);
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.chatbotmc.service;
 
 import com.example.chatbotmc.dto.RagChunkDTO;
+import com.example.chatbotmc.dto.RagChunkFingerprint;
 import com.example.chatbotmc.entity.RagChunk;
+import com.example.chatbotmc.llm.Embedding;
 import com.example.chatbotmc.repository.RagChunkRepository;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -9,13 +11,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Service to load RAG chunks from data.json into the database with embeddings
@@ -30,26 +38,23 @@ public class RagDataLoader implements CommandLineRunner {
     private final EmbeddingService embeddingService;
     private final ResourceLoader resourceLoader;
     private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Value("${rag.auto-load:false}")
     private boolean autoLoad;
     
-    @Value("${rag.batch-size:10}")
-    private int batchSize;
-    
-    @Value("${rag.delay-ms:1000}")
-    private long delayMs;
-    
     public RagDataLoader(
             RagChunkRepository ragChunkRepository,
             EmbeddingService embeddingService,
             ResourceLoader resourceLoader,
-            ObjectMapper objectMapper
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher
     ) {
         this.ragChunkRepository = ragChunkRepository;
         this.embeddingService = embeddingService;
         this.resourceLoader = resourceLoader;
         this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
     }
     
     @Override
@@ -64,21 +69,16 @@ public class RagDataLoader implements CommandLineRunner {
     }
     
     /**
-     * Load all RAG chunks from data.json and generate embeddings
+     * Sync RAG chunks from data.json into the database
+     * Chunks whose content hash matches the stored one keep their embedding; only new or
+     * edited chunks are sent to Gemini, and chunks removed from data.json are deleted.
+     * Publishes a RagCorpusChangedEvent when any row changed.
      * Can be called manually via API endpoint
      */
-    public void loadRagData() {
+    public LoadSummary loadRagData() {
         try {
             logger.info("Loading RAG chunks from data.json...");
             
-            // Check if data already exists
-            long existingCount = ragChunkRepository.count();
-            if (existingCount > 0) {
-                logger.info("Found {} existing chunks in database. Skipping load.", existingCount);
-                logger.info("To reload, clear the rag_chunk table first.");
-                return;
-            }
-            
             // Load JSON file
             Resource resource = resourceLoader.getResource("classpath:data.json");
             List<RagChunkDTO> chunkDTOs = objectMapper.readValue(
@@ -87,99 +87,167 @@ public class RagDataLoader implements CommandLineRunner {
             );
             
             logger.info("Loaded {} chunks from data.json", chunkDTOs.size());
-            logger.info("Starting embedding generation (this may take a while)...");
             
-            int totalProcessed = 0;
-            int totalFailed = 0;
-            int batchCount = 0;
+            Map<String, RagChunkFingerprint> existing = new HashMap<>();
+            for (RagChunkFingerprint fingerprint : ragChunkRepository.findAllFingerprints()) {
+                existing.put(fingerprint.getChunkId(), fingerprint);
+            }
+            
+            // Diff data.json against the table
+            List<RagChunkDTO> toEmbed = new ArrayList<>();
+            List<String> hashes = new ArrayList<>();
+            List<Long> existingIds = new ArrayList<>();
+            Set<Long> upsertedIds = new HashSet<>();
+            int unchanged = 0;
+            int metadataUpdated = 0;
+            int invalid = 0;
+            
+            for (RagChunkDTO dto : chunkDTOs) {
+                if (dto.getId() == null || dto.getText() == null || dto.getText().isBlank()) {
+                    // Skip the bad entry but keep any stored version of it rather than deleting it
+                    if (dto.getId() != null) {
+                        existing.remove(dto.getId());
+                    }
+                    invalid++;
+                    logger.warn("Skipping data.json entry without id or text: {}", dto.getId());
+                    continue;
+                }
+                
+                String hash = embeddingService.contentHash(dto.getText());
+                RagChunkFingerprint fingerprint = existing.remove(dto.getId());
+                
+                if (fingerprint != null && hash.equals(fingerprint.getContentHash())) {
+                    if (metadataMatches(dto, fingerprint)) {
+                        unchanged++;
+                    } else {
+                        // Same text, so the stored embedding stays valid
+                        updateMetadata(dto, fingerprint.getId());
+                        upsertedIds.add(fingerprint.getId());
+                        metadataUpdated++;
+                    }
+                } else {
+                    toEmbed.add(dto);
+                    hashes.add(hash);
+                    existingIds.add(fingerprint != null ? fingerprint.getId() : null);
+                }
+            }
+            
+            // Whatever is left in the map no longer exists in data.json
+            List<Long> removedIds = existing.values().stream().map(RagChunkFingerprint::getId).toList();
+            if (!removedIds.isEmpty()) {
+                ragChunkRepository.deleteAllByIdInBatch(removedIds);
+            }
+            
+            logger.info("{} chunks unchanged, {} metadata-only updates, {} new or edited, {} removed, {} invalid",
+                unchanged, metadataUpdated, toEmbed.size(), removedIds.size(), invalid);
+            
+            int added = 0;
+            int updated = metadataUpdated;
+            int totalFailed = invalid;
             
-            // Process in batches to avoid overwhelming the API
-            for (int i = 0; i < chunkDTOs.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, chunkDTOs.size());
-                List<RagChunkDTO> batch = chunkDTOs.subList(i, end);
+            if (!toEmbed.isEmpty()) {
+                logger.info("Starting embedding generation for {} chunks...", toEmbed.size());
                 
-                batchCount++;
-                logger.info("Processing batch {}/{} ({}-{} of {})", 
-                    batchCount, 
-                    (int) Math.ceil((double) chunkDTOs.size() / batchSize),
-                    i + 1, 
-                    end, 
-                    chunkDTOs.size()
+                // One batched pass over all texts; EmbeddingService caps request size and concurrency
+                List<Embedding> embeddings = embeddingService.generateEmbeddings(
+                    toEmbed.stream().map(RagChunkDTO::getText).toList()
                 );
                 
-                for (RagChunkDTO dto : batch) {
+                for (int i = 0; i < toEmbed.size(); i++) {
+                    RagChunkDTO dto = toEmbed.get(i);
+                    Long existingId = existingIds.get(i);
+                    Embedding embedding = embeddings.get(i);
                     try {
-                        saveChunkWithTransaction(dto);
-                        totalProcessed++;
-                        
-                        // Small delay to avoid rate limiting
-                        Thread.sleep(100);
+                        if (embedding == null) {
+                            totalFailed++;
+                            logger.warn("Failed to generate embedding for chunk: {}", dto.getId());
+                            if (existingId != null) {
+                                // Keep the previous version; its stale hash makes the next load retry it
+                                continue;
+                            }
+                        }
                         
+                        Long savedId = saveChunk(dto, existingId, embedding, hashes.get(i));
+                        if (embedding != null) {
+                            upsertedIds.add(savedId);
+                            if (existingId == null) {
+                                added++;
+                            } else {
+                                updated++;
+                            }
+                        }
                     } catch (Exception e) {
                         totalFailed++;
                         logger.error("Error processing chunk {}: {}", dto.getId(), e.getMessage(), e);
                     }
                 }
-                
-                // Longer delay between batches
-                if (end < chunkDTOs.size()) {
-                    logger.info("Waiting {}ms before next batch...", delayMs);
-                    Thread.sleep(delayMs);
-                }
             }
             
-            logger.info("✓ Successfully loaded {} chunks with embeddings", totalProcessed);
-            logger.info("✗ Failed to load {} chunks", totalFailed);
+            if (!upsertedIds.isEmpty() || !removedIds.isEmpty()) {
+                eventPublisher.publishEvent(new RagCorpusChangedEvent(upsertedIds, new HashSet<>(removedIds)));
+            }
+            
+            LoadSummary summary = new LoadSummary(added, updated, unchanged, removedIds.size(), totalFailed);
+            logger.info("✓ RAG sync finished: {}", summary);
             logger.info("✓ Total chunks in database: {}", ragChunkRepository.count());
             logger.info("✓ Chunks with embeddings: {}", ragChunkRepository.countByEmbeddingIsNotNull());
+            return summary;
             
         } catch (IOException e) {
             logger.error("Failed to load data.json: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to load RAG data", e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.error("Loading interrupted: {}", e.getMessage());
-            throw new RuntimeException("Loading interrupted", e);
         }
     }
     
     /**
-     * Save a single chunk with its own transaction to prevent cascade failures
+     * Insert or update a single chunk; each save runs in its own repository transaction
+     * so one bad chunk does not roll back the others
+     * A new chunk without embedding is stored without content hash so the next load retries it.
+     * 
+     * @return id of the saved row
      */
-    @Transactional
-    private void saveChunkWithTransaction(RagChunkDTO dto) {
-        RagChunk chunk = convertToEntity(dto);
-        
-        // Generate embedding
-        List<Double> embedding = embeddingService.generateEmbedding(dto.getText());
-        if (embedding != null) {
-            String vectorString = embeddingService.embeddingToVectorString(embedding);
-            chunk.setEmbedding(vectorString);
-        } else {
-            logger.warn("Failed to generate embedding for chunk: {}", dto.getId());
-        }
-        
-        ragChunkRepository.save(chunk);
+    private Long saveChunk(RagChunkDTO dto, Long existingId, Embedding embedding, String contentHash) {
+        RagChunk chunk = existingId != null
+            ? ragChunkRepository.findById(existingId).orElseGet(RagChunk::new)
+            : new RagChunk();
+        copyToEntity(dto, chunk);
+        chunk.setEmbedding(embedding);
+        chunk.setContentHash(embedding != null ? contentHash : null);
+        return ragChunkRepository.save(chunk).getId();
+    }
+    
+    private void updateMetadata(RagChunkDTO dto, Long id) {
+        ragChunkRepository.findById(id).ifPresent(chunk -> {
+            copyToEntity(dto, chunk);
+            ragChunkRepository.save(chunk);
+        });
+    }
+    
+    private boolean metadataMatches(RagChunkDTO dto, RagChunkFingerprint fingerprint) {
+        RagChunkDTO.Metadata metadata = dto.getMetadata() != null ? dto.getMetadata() : new RagChunkDTO.Metadata();
+        return Objects.equals(metadata.getModpack(), fingerprint.getModpack())
+            && Objects.equals(metadata.getModName(), fingerprint.getModName())
+            && Objects.equals(metadata.getModVersion(), fingerprint.getModVersion())
+            && Objects.equals(metadata.getCategory(), fingerprint.getCategory())
+            && Objects.equals(metadata.getDocType(), fingerprint.getDocType())
+            && Objects.equals(metadata.getLanguage(), fingerprint.getLanguage());
     }
     
     /**
-     * Convert RagChunkDTO to RagChunk entity
+     * Copy RagChunkDTO fields onto a RagChunk entity
      */
-    private RagChunk convertToEntity(RagChunkDTO dto) {
-        RagChunk chunk = new RagChunk();
+    private void copyToEntity(RagChunkDTO dto, RagChunk chunk) {
         chunk.setChunkId(dto.getId());
         chunk.setText(dto.getText());
         
-        if (dto.getMetadata() != null) {
-            chunk.setModpack(dto.getMetadata().getModpack());
-            chunk.setModName(dto.getMetadata().getModName());
-            chunk.setModVersion(dto.getMetadata().getModVersion());
-            chunk.setCategory(dto.getMetadata().getCategory());
-            chunk.setDocType(dto.getMetadata().getDocType());
-            chunk.setLanguage(dto.getMetadata().getLanguage());
-        }
-        
-        return chunk;
+        // Missing metadata clears the columns so updated rows match data.json exactly
+        RagChunkDTO.Metadata metadata = dto.getMetadata() != null ? dto.getMetadata() : new RagChunkDTO.Metadata();
+        chunk.setModpack(metadata.getModpack());
+        chunk.setModName(metadata.getModName());
+        chunk.setModVersion(metadata.getModVersion());
+        chunk.setCategory(metadata.getCategory());
+        chunk.setDocType(metadata.getDocType());
+        chunk.setLanguage(metadata.getLanguage());
     }
     
     /**
@@ -196,4 +264,9 @@ public class RagDataLoader implements CommandLineRunner {
             totalChunks > 0 ? (chunksWithEmbeddings * 100.0 / totalChunks) : 0
         );
     }
+    
+    /**
+     * Outcome of a data.json sync
+     */
+    public record LoadSummary(int added, int updated, int unchanged, int removed, int failed) {}
 }
@@ -1,17 +1,46 @@
 package com.example.chatbotmc.service;
 
-import com.example.chatbotmc.entity.RagChunk;
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.llm.Embedding;
+import com.example.chatbotmc.prompt.PromptBuilder;
 import com.example.chatbotmc.repository.RagChunkRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for Retrieval-Augmented Generation (RAG)
  * Handles semantic search and context building for LLM queries
+ *
+ * Retrieval is hybrid by default (rag.hybrid.enabled): a Postgres full-text search over mod
+ * name and text runs in parallel with the vector search, and the two rankings are merged with
+ * reciprocal-rank fusion. The lexical leg catches exact item, block and mod names that
+ * embeddings tend to blur, and keeps retrieval working when no query embedding is available.
+ *
+ * Vector hits are held to rag.similarity-threshold, and k shrinks adaptively: vector hits more
+ * than rag.adaptive-k.max-score-drop below the best one are dropped too. Off-topic questions
+ * thus get few or no vector chunks instead of always topK. Full-text hits are not held to an
+ * embedding similarity floor, since the identifiers they exist to catch are exactly what
+ * embeddings match poorly. They must instead contain rag.hybrid.min-matched-terms of the
+ * query's terms (all of them for shorter queries), so a single shared word is not enough.
  */
 @Service
 public class RagService {
@@ -20,6 +49,8 @@ public class RagService {
     
     private final RagChunkRepository ragChunkRepository;
     private final EmbeddingService embeddingService;
+    private final VectorIndex vectorIndex;
+    private final ContextAssembler contextAssembler;
     
     @Value("${rag.top-k:5}")
     private int defaultTopK;
@@ -27,12 +58,40 @@ public class RagService {
     @Value("${rag.similarity-threshold:0.7}")
     private double similarityThreshold;
     
+    @Value("${rag.adaptive-k.max-score-drop:0.1}")
+    private double maxScoreDrop;
+    
     @Value("${rag.enabled:true}")
     private boolean ragEnabled;
     
-    public RagService(RagChunkRepository ragChunkRepository, EmbeddingService embeddingService) {
+    @Value("${rag.hybrid.enabled:true}")
+    private boolean hybridEnabled;
+    
+    @Value("${rag.hybrid.candidates:20}")
+    private int hybridCandidates;
+    
+    @Value("${rag.hybrid.rrf-k:60}")
+    private int rrfK;
+    
+    @Value("${rag.hybrid.min-matched-terms:2}")
+    private int minMatchedTerms;
+    
+    @Value("${rag.hybrid.full-text-timeout:2s}")
+    private Duration fullTextTimeout;
+    
+    private final Scheduler fullTextSearchScheduler;
+    
+    // Corpus counts, refreshed off the request path; UNKNOWN until the first refresh succeeds
+    private volatile CorpusSnapshot corpus = CorpusSnapshot.UNKNOWN;
+    
+    public RagService(RagChunkRepository ragChunkRepository, EmbeddingService embeddingService, VectorIndex vectorIndex,
+                      ContextAssembler contextAssembler,
+                      @Qualifier("fullTextSearchScheduler") Scheduler fullTextSearchScheduler) {
         this.ragChunkRepository = ragChunkRepository;
         this.embeddingService = embeddingService;
+        this.vectorIndex = vectorIndex;
+        this.contextAssembler = contextAssembler;
+        this.fullTextSearchScheduler = fullTextSearchScheduler;
     }
     
     /**
@@ -42,7 +101,7 @@ public class RagService {
      * @param topK Number of top similar chunks to retrieve
      * @return List of relevant RAG chunks
      */
-    public List<RagChunk> retrieveRelevantChunks(String query, int topK) {
+    public List<RetrievedChunk> retrieveRelevantChunks(String query, int topK) {
         if (!ragEnabled) {
             logger.debug("RAG is disabled");
             return List.of();
@@ -52,18 +111,32 @@ public class RagService {
             logger.debug("Retrieving relevant chunks for query: {}", query);
             
             // Generate embedding for the query
-            List<Double> queryEmbedding = embeddingService.generateEmbedding(query);
+            Embedding queryEmbedding = embeddingService.generateQueryEmbedding(query);
             
-            if (queryEmbedding == null || queryEmbedding.isEmpty()) {
+            if (queryEmbedding == null) {
                 logger.warn("Failed to generate embedding for query");
-                return List.of();
             }
             
-            // Convert to vector string format
-            String vectorString = embeddingService.embeddingToVectorString(queryEmbedding);
+            return retrieveRelevantChunks(query, queryEmbedding, topK);
             
-            // Perform similarity search
-            List<RagChunk> chunks = ragChunkRepository.findSimilarByEmbedding(vectorString, topK);
+        } catch (Exception e) {
+            logger.error("Error retrieving relevant chunks: {}", e.getMessage(), e);
+            return List.of();
+        }
+    }
+    
+    /**
+     * Retrieve relevant chunks for a query that was already embedded
+     * Lets callers reuse one query embedding for retrieval and other lookups.
+     */
+    public List<RetrievedChunk> retrieveRelevantChunks(Embedding queryEmbedding, int topK) {
+        if (!ragEnabled) {
+            logger.debug("RAG is disabled");
+            return List.of();
+        }
+        
+        try {
+            List<RetrievedChunk> chunks = hybridSearch(null, queryEmbedding, null, topK);
             
             logger.debug("Retrieved {} relevant chunks", chunks.size());
             return chunks;
@@ -74,29 +147,64 @@ public class RagService {
         }
     }
     
+    /**
+     * Retrieve relevant chunks for a query that was already embedded, combining vector and
+     * full-text search when hybrid retrieval is enabled
+     * 
+     * @param query The user's question, used for the full-text leg
+     * @param queryEmbedding Its embedding, or null to search by text only
+     */
+    public List<RetrievedChunk> retrieveRelevantChunks(String query, Embedding queryEmbedding, int topK) {
+        if (!ragEnabled) {
+            logger.debug("RAG is disabled");
+            return List.of();
+        }
+        
+        try {
+            List<RetrievedChunk> chunks = hybridSearch(query, queryEmbedding, null, topK);
+            
+            logger.debug("Retrieved {} relevant chunks", chunks.size());
+            return chunks;
+            
+        } catch (Exception e) {
+            logger.error("Error retrieving relevant chunks: {}", e.getMessage(), e);
+            return List.of();
+        }
+    }
+    
+    /**
+     * Retrieve relevant chunks for a question and its embedding using default topK value
+     */
+    public List<RetrievedChunk> retrieveRelevantChunks(String query, Embedding queryEmbedding) {
+        return retrieveRelevantChunks(query, queryEmbedding, defaultTopK);
+    }
+    
+    /**
+     * Retrieve relevant chunks for an embedded query using default topK value
+     */
+    public List<RetrievedChunk> retrieveRelevantChunks(Embedding queryEmbedding) {
+        return retrieveRelevantChunks(queryEmbedding, defaultTopK);
+    }
+    
     /**
      * Retrieve relevant chunks using default topK value
      */
-    public List<RagChunk> retrieveRelevantChunks(String query) {
+    public List<RetrievedChunk> retrieveRelevantChunks(String query) {
         return retrieveRelevantChunks(query, defaultTopK);
     }
     
     /**
      * Retrieve relevant chunks filtered by modpack
      */
-    public List<RagChunk> retrieveRelevantChunksByModpack(String query, String modpack, int topK) {
+    public List<RetrievedChunk> retrieveRelevantChunksByModpack(String query, String modpack, int topK) {
         if (!ragEnabled) {
             return List.of();
         }
         
         try {
-            List<Double> queryEmbedding = embeddingService.generateEmbedding(query);
-            if (queryEmbedding == null) {
-                return List.of();
-            }
+            Embedding queryEmbedding = embeddingService.generateQueryEmbedding(query);
             
-            String vectorString = embeddingService.embeddingToVectorString(queryEmbedding);
-            return ragChunkRepository.findSimilarByEmbeddingAndModpack(vectorString, modpack, topK);
+            return hybridSearch(query, queryEmbedding, modpack, topK);
             
         } catch (Exception e) {
             logger.error("Error retrieving chunks by modpack: {}", e.getMessage());
@@ -105,38 +213,116 @@ public class RagService {
     }
     
     /**
-     * Build context string from retrieved chunks
-     * Formats chunks into a readable context for the LLM
+     * Vector search, full-text search or both fused, depending on configuration and inputs
+     * The full-text leg runs on its own scheduler while the vector leg runs on the calling
+     * thread. If either leg fails, or the full-text one is rejected or outlasts
+     * rag.hybrid.full-text-timeout, the other one's results are used alone.
      */
-    public String buildContextString(List<RagChunk> chunks) {
-        if (chunks == null || chunks.isEmpty()) {
-            return "";
+    private List<RetrievedChunk> hybridSearch(String query, Embedding queryEmbedding, String modpack, int topK) {
+        boolean lexical = hybridEnabled && query != null && !query.isBlank();
+        if (!lexical) {
+            if (queryEmbedding == null) {
+                return List.of();
+            }
+            List<RetrievedChunk> hits = vectorIndex.search(queryEmbedding, modpack, topK, similarityThreshold);
+            return keepRelevant(hits, similarityThreshold, maxScoreDrop);
         }
         
-        StringBuilder context = new StringBuilder();
+        int candidates = Math.max(topK, hybridCandidates);
+        CompletableFuture<List<RetrievedChunk>> lexicalLeg = Mono.fromCallable(
+                () -> ragChunkRepository.findByFullText(query, modpack, candidates))
+            .subscribeOn(fullTextSearchScheduler)
+            .timeout(fullTextTimeout)
+            .toFuture();
         
-        for (int i = 0; i < chunks.size(); i++) {
-            RagChunk chunk = chunks.get(i);
-            
-            // Add metadata header
-            context.append("--- Document ").append(i + 1).append(" ---\n");
-            
-            if (chunk.getModpack() != null) {
-                context.append("Modpack: ").append(chunk.getModpack()).append("\n");
-            }
-            if (chunk.getModName() != null) {
-                context.append("Mod: ").append(chunk.getModName()).append("\n");
+        List<RetrievedChunk> vectorHits = List.of();
+        if (queryEmbedding != null) {
+            try {
+                vectorHits = vectorIndex.search(queryEmbedding, modpack, candidates, similarityThreshold);
+            } catch (Exception e) {
+                logger.warn("Vector search failed, using full-text results only: {}", e.getMessage());
             }
-            if (chunk.getCategory() != null) {
-                context.append("Category: ").append(chunk.getCategory()).append("\n");
+        }
+        
+        List<RetrievedChunk> lexicalHits;
+        try {
+            lexicalHits = lexicalLeg.join();
+        } catch (Exception e) {
+            logger.warn("Full-text search failed, using vector results only: {}", e.getMessage());
+            lexicalHits = List.of();
+        }
+        
+        logger.debug("Hybrid search: {} vector hits, {} full-text hits", vectorHits.size(), lexicalHits.size());
+        // Vector hits are filtered by similarity, full-text hits by the query terms they contain
+        List<RetrievedChunk> relevantVectorHits = keepRelevant(vectorHits, similarityThreshold, maxScoreDrop);
+        List<RetrievedChunk> relevantLexicalHits = keepMatching(lexicalHits, minMatchedTerms);
+        return fuseRankings(List.of(relevantVectorHits, relevantLexicalHits), rrfK, topK);
+    }
+    
+    /**
+     * Drop vector hits below the similarity threshold or more than maxScoreDrop below the best hit
+     * Chunks without a distance are kept, since there is nothing to compare them by.
+     */
+    static List<RetrievedChunk> keepRelevant(List<RetrievedChunk> ranking, double threshold, double maxScoreDrop) {
+        double best = ranking.stream()
+            .map(RetrievedChunk::getSimilarity)
+            .filter(Objects::nonNull)
+            .mapToDouble(Double::doubleValue)
+            .max()
+            .orElse(threshold);
+        double floor = Math.max(threshold, best - maxScoreDrop);
+        
+        return ranking.stream()
+            .filter(chunk -> chunk.getSimilarity() == null || chunk.getSimilarity() >= floor)
+            .toList();
+    }
+    
+    /**
+     * Drop full-text hits containing fewer than minMatchedTerms of the query's terms
+     * Queries with fewer terms need all of them. Chunks without term counts are kept.
+     */
+    static List<RetrievedChunk> keepMatching(List<RetrievedChunk> ranking, int minMatchedTerms) {
+        return ranking.stream()
+            .filter(chunk -> chunk.getMatchedTerms() == null || chunk.getQueryTerms() == null
+                || chunk.getMatchedTerms() >= Math.min(minMatchedTerms, chunk.getQueryTerms()))
+            .toList();
+    }
+    
+    /**
+     * Reciprocal-rank fusion: each chunk scores the sum of 1 / (k + rank) over the rankings it
+     * appears in, so chunks found by both searches rise to the top
+     * Only ranks are used, which sidesteps comparing cosine distances with ts_rank scores.
+     * Ties keep the order of the earlier ranking.
+     */
+    static List<RetrievedChunk> fuseRankings(List<List<RetrievedChunk>> rankings, int k, int topK) {
+        Map<Long, Double> scores = new HashMap<>();
+        Map<Long, RetrievedChunk> chunks = new LinkedHashMap<>();
+        
+        for (List<RetrievedChunk> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                RetrievedChunk chunk = ranking.get(rank);
+                scores.merge(chunk.getId(), 1.0 / (k + rank + 1), Double::sum);
+                chunks.putIfAbsent(chunk.getId(), chunk);
             }
-            
-            context.append("\n");
-            context.append(chunk.getText());
-            context.append("\n\n");
         }
         
-        return context.toString();
+        return chunks.values().stream()
+            .sorted(Comparator.comparingDouble((RetrievedChunk chunk) -> scores.get(chunk.getId())).reversed())
+            .limit(topK)
+            .toList();
+    }
+    
+    /**
+     * Build context string from retrieved chunks
+     * Formats chunks into a readable context for the LLM, within the token budget of
+     * ContextAssembler
+     */
+    public String buildContextString(List<RetrievedChunk> chunks) {
+        if (chunks == null || chunks.isEmpty()) {
+            return "";
+        }
+        
+        return contextAssembler.assemble(chunks).text();
     }
     
     /**
@@ -146,12 +332,21 @@ public class RagService {
      * @param chunks Retrieved relevant chunks
      * @return Formatted prompt with context for the LLM
      */
-    public String buildAugmentedPrompt(String userQuery, List<RagChunk> chunks) {
+    public String buildAugmentedPrompt(String userQuery, List<RetrievedChunk> chunks) {
+        return buildAugmentedPrompt(userQuery, chunks, "");
+    }
+    
+    /**
+     * Build an augmented prompt that also carries the conversation so far
+     * 
+     * @param history Rendered conversation history, empty for a first question
+     */
+    public String buildAugmentedPrompt(String userQuery, List<RetrievedChunk> chunks, String history) {
         String context = buildContextString(chunks);
         
         if (context.isEmpty()) {
             // No context available, return standard prompt
-            return buildFallbackPrompt(userQuery);
+            return buildFallbackPrompt(userQuery, history);
         }
         
         return String.format("""
@@ -168,17 +363,17 @@ public class RagService {
             - Provide step-by-step instructions when applicable
             - If the question is not about Minecraft, politely redirect to Minecraft topics
             
-            USER'S QUESTION:
+            %sUSER'S QUESTION:
             %s
             
             Please provide a helpful, accurate, and friendly response.
-            """, context, userQuery);
+            """, context, PromptBuilder.historySection(history), userQuery);
     }
     
     /**
      * Build a fallback prompt when no RAG context is available
      */
-    private String buildFallbackPrompt(String userQuery) {
+    private String buildFallbackPrompt(String userQuery, String history) {
         return String.format("""
             You are a helpful Minecraft assistant chatbot. You have extensive knowledge about:
             - Minecraft gameplay, mechanics, and strategies
@@ -190,41 +385,107 @@ public class RagService {
             Please provide helpful, accurate, and friendly responses to Minecraft-related questions.
             If the question is not about Minecraft, politely redirect the conversation back to Minecraft topics.
             
-            User's question: %s
-            """, userQuery);
+            %sUser's question: %s
+            """, PromptBuilder.historySection(history), userQuery);
+    }
+    
+    public boolean isEnabled() {
+        return ragEnabled;
     }
     
     /**
      * Check if RAG system is enabled and has data loaded
+     * Reads the corpus snapshot, so it costs no query on the chat path.
      */
     public boolean isRagAvailable() {
         if (!ragEnabled) {
             return false;
         }
         
+        return corpus.chunksWithEmbeddings() > 0;
+    }
+    
+    /**
+     * Get statistics about the RAG system, as of the last corpus snapshot
+     * 
+     * @return empty if the corpus has not been counted successfully yet
+     */
+    public Optional<RagStats> getStats() {
+        CorpusSnapshot snapshot = corpus;
+        if (snapshot == CorpusSnapshot.UNKNOWN) {
+            return Optional.empty();
+        }
+        
+        return Optional.of(new RagStats(
+            ragEnabled,
+            snapshot.totalChunks(),
+            snapshot.chunksWithEmbeddings(),
+            defaultTopK,
+            similarityThreshold,
+            maxScoreDrop,
+            snapshot.refreshedAt()
+        ));
+    }
+    
+    /**
+     * Recount the corpus once the application is up, after an optional auto-load
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refreshCorpusSnapshot();
+    }
+    
+    /**
+     * Recount the corpus after a data sync
+     */
+    @EventListener
+    public void onCorpusChanged(RagCorpusChangedEvent event) {
+        refreshCorpusSnapshot();
+    }
+    
+    /**
+     * Periodic recount, catching rag_chunk changes made outside the data loader
+     */
+    @Scheduled(fixedDelayString = "${rag.stats.refresh-interval:5m}", initialDelayString = "${rag.stats.refresh-interval:5m}")
+    public void scheduledCorpusRefresh() {
+        refreshCorpusSnapshot();
+    }
+    
+    /**
+     * Retry a corpus count that has never succeeded (e.g. the database was not ready at startup)
+     * more often than the regular refresh, so RAG is not off for a whole refresh interval
+     */
+    @Scheduled(fixedDelayString = "${rag.stats.retry-interval:30s}", initialDelayString = "${rag.stats.retry-interval:30s}")
+    public void retryUnknownCorpusSnapshot() {
+        if (corpus == CorpusSnapshot.UNKNOWN) {
+            refreshCorpusSnapshot();
+        }
+    }
+    
+    /**
+     * Replace the corpus snapshot with fresh counts from rag_chunk
+     * On failure the previous snapshot is kept.
+     */
+    public void refreshCorpusSnapshot() {
         try {
-            long count = ragChunkRepository.countByEmbeddingIsNotNull();
-            return count > 0;
+            corpus = new CorpusSnapshot(
+                ragChunkRepository.count(),
+                ragChunkRepository.countByEmbeddingIsNotNull(),
+                Instant.now()
+            );
+            logger.debug("Refreshed RAG corpus snapshot: {}", corpus);
         } catch (Exception e) {
-            logger.error("Error checking RAG availability: {}", e.getMessage());
-            return false;
+            logger.error("Error refreshing RAG corpus snapshot: {}", e.getMessage());
         }
     }
     
     /**
-     * Get statistics about the RAG system
+     * Row counts of rag_chunk at one point in time
      */
-    public RagStats getStats() {
-        long totalChunks = ragChunkRepository.count();
-        long chunksWithEmbeddings = ragChunkRepository.countByEmbeddingIsNotNull();
+    private record CorpusSnapshot(long totalChunks, long chunksWithEmbeddings, Instant refreshedAt) {
         
-        return new RagStats(
-            ragEnabled,
-            totalChunks,
-            chunksWithEmbeddings,
-            defaultTopK,
-            similarityThreshold
-        );
+        // Not counted yet: RAG counts as unavailable until a refresh succeeds
+        static final CorpusSnapshot UNKNOWN = new CorpusSnapshot(0, 0, null);
     }
     
     /**
@@ -235,6 +496,8 @@ public class RagService {
         long totalChunks,
         long chunksWithEmbeddings,
         int defaultTopK,
-        double similarityThreshold
+        double similarityThreshold,
+        double maxScoreDrop,
+        Instant refreshedAt
     ) {}
 }
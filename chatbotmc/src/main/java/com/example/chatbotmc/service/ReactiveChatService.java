@@ -0,0 +1,90 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.ChatResponse;
+import com.example.chatbotmc.dto.ChatStreamEvent;
+import com.example.chatbotmc.llm.Embedding;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Chat with history as one non-blocking pipeline: quota → save question → embed and load
+ * history → retrieve → generate → save answer
+ * Embedding and generation are WebClient calls that hold no thread while waiting; the
+ * blocking steps (quota, persistence, retrieval) run on the bounded chat-db scheduler. A chat
+ * waiting on Gemini therefore costs no thread at all.
+ */
+@Service
+@ConditionalOnProperty(name = "chat.reactive.enabled", havingValue = "true")
+public class ReactiveChatService {
+
+    private final LlmService llmService;
+    private final EmbeddingService embeddingService;
+    private final UserService userService;
+    private final Scheduler dbScheduler;
+
+    public ReactiveChatService(LlmService llmService,
+                               EmbeddingService embeddingService,
+                               UserService userService,
+                               @Qualifier("chatDbScheduler") Scheduler dbScheduler) {
+        this.llmService = llmService;
+        this.embeddingService = embeddingService;
+        this.userService = userService;
+        this.dbScheduler = dbScheduler;
+    }
+
+    /**
+     * Non-blocking equivalent of LlmService.chatWithHistory, including the quota check
+     */
+    public Mono<ChatResponse> chat(Long userId, String userInput, Long conversationId) {
+        return startTurn(userId, userInput, conversationId)
+                .flatMap(question -> prepareTurn(userId, userInput, question)
+                        .flatMap(llmService::generateAnswerAsync)
+                        .flatMap(aiResponse -> onDb(() -> llmService.saveAnswer(userId, question.conversationId(), aiResponse))));
+    }
+
+    /**
+     * Non-blocking equivalent of LlmService.streamChatWithHistory, including the quota check
+     */
+    public Flux<ChatStreamEvent> streamChat(Long userId, String userInput, Long conversationId) {
+        return startTurn(userId, userInput, conversationId)
+                .flatMapMany(question -> prepareTurn(userId, userInput, question)
+                        .flatMapMany(turn -> llmService.streamTurn(turn, userId, question.conversationId(), dbScheduler)));
+    }
+
+    /**
+     * Count the query against the user's quota and save the question
+     */
+    private Mono<LlmService.SavedQuestion> startTurn(Long userId, String userInput, Long conversationId) {
+        return onDb(() -> {
+            userService.incrementQueryCount(userId);
+            return llmService.saveUserMessage(userId, userInput, conversationId);
+        });
+    }
+
+    /**
+     * Load the conversation history, embed the question (with the previous one for a follow-up,
+     * see ConversationContext.retrievalQuery), then build the turn
+     */
+    private Mono<LlmService.PreparedTurn> prepareTurn(Long userId, String userInput, LlmService.SavedQuestion question) {
+        return onDb(() -> llmService.loadHistory(userId, question))
+                .flatMap(history -> queryEmbedding(history.retrievalQuery(userInput))
+                        .flatMap(embedding -> onDb(() -> llmService.prepareTurn(userInput, embedding.orElse(null), history))));
+    }
+
+    private Mono<Optional<Embedding>> queryEmbedding(String query) {
+        return llmService.needsQueryEmbedding()
+                ? embeddingService.generateQueryEmbeddingAsync(query).map(Optional::of).defaultIfEmpty(Optional.empty())
+                : Mono.just(Optional.empty());
+    }
+
+    private <T> Mono<T> onDb(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(dbScheduler);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.llm.Embedding;
+import com.example.chatbotmc.util.BoundedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of LLM answers looked up by query embedding instead of exact text
+ * A question whose embedding is within rag.answer-cache.similarity-threshold (cosine) of a
+ * cached question in the same modpack scope gets the cached answer, so paraphrases of
+ * frequent questions skip generation. Bounded by entry count (LRU) and TTL, and cleared
+ * whenever the RAG corpus changes because answers were generated from the old context.
+ */
+@Component
+public class SemanticAnswerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    // Access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<Long, CachedAnswer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Not a monitor: a virtual thread waiting out another caller's scan would pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SemanticAnswerCache(
+            @Value("${rag.answer-cache.enabled:true}") boolean enabled,
+            @Value("${rag.answer-cache.similarity-threshold:0.95}") double similarityThreshold,
+            @Value("${rag.answer-cache.max-size:500}") int maxSize,
+            @Value("${rag.answer-cache.ttl-minutes:60}") long ttlMinutes
+    ) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = Duration.ofMinutes(ttlMinutes).toNanos();
+    }
+
+    /**
+     * Find the cached answer whose question is most similar to the query
+     * A linear scan: with a few hundred entries it costs far less than one embedding call.
+     *
+     * @param scope Modpack the answer was generated for, or null for unscoped questions
+     * @return The answer, or null if no cached question is similar enough
+     */
+    public String find(Embedding queryEmbedding, String scope) {
+        if (!enabled || queryEmbedding == null) {
+            return null;
+        }
+
+        float[] query = queryEmbedding.normalized();
+        long now = System.nanoTime();
+
+        lock.lock();
+        try {
+            Long bestId = null;
+            double bestSimilarity = similarityThreshold;
+
+            Iterator<Map.Entry<Long, CachedAnswer>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, CachedAnswer> entry = it.next();
+                CachedAnswer cached = entry.getValue();
+                if (now - cached.createdAt() > ttlNanos) {
+                    it.remove();
+                    evictions.increment();
+                    continue;
+                }
+                if (!Objects.equals(scope, cached.scope()) || cached.vector().length != query.length) {
+                    continue;
+                }
+                double similarity = dot(query, cached.vector());
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    bestId = entry.getKey();
+                }
+            }
+
+            if (bestId == null) {
+                misses.increment();
+                return null;
+            }
+
+            hits.increment();
+            logger.debug("Semantic answer cache hit with similarity {}", bestSimilarity);
+            // get() moves the entry to the most recently used end
+            return entries.get(bestId).answer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(Embedding queryEmbedding, String scope, String answer) {
+        if (!enabled || queryEmbedding == null || answer == null || answer.isBlank()) {
+            return;
+        }
+
+        CachedAnswer cached = new CachedAnswer(queryEmbedding.normalized(), scope, answer, System.nanoTime());
+        lock.lock();
+        try {
+            entries.put(nextId.incrementAndGet(), cached);
+            Iterator<Long> it = entries.keySet().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cached answers were generated from the previous RAG context
+     */
+    @EventListener
+    public void onCorpusChanged(RagCorpusChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            if (!entries.isEmpty()) {
+                logger.info("Clearing {} cached answers", entries.size());
+            }
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public BoundedCache.Stats stats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        return new BoundedCache.Stats(hits.sum(), misses.sum(), evictions.sum(), size, maxSize);
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record CachedAnswer(float[] vector, String scope, String answer, long createdAt) {}
+}
@@ -1,10 +1,11 @@
 package com.example.chatbotmc.service;
 
-import com.example.chatbotmc.entity.User;
 import com.example.chatbotmc.repository.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+
 @Service
 public class UserService {
     
@@ -22,27 +23,24 @@ public class UserService {
      * @return true if user has reached limit, false otherwise
      */
     public boolean hasReachedQueryLimit(Long userId) {
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new RuntimeException("User not found"));
-        return user.getQueryCount() >= MAX_QUERY_LIMIT;
+        return getQueryCount(userId) >= MAX_QUERY_LIMIT;
     }
     
     /**
      * Increment user's query count
+     * Check and increment happen in a single conditional UPDATE, so concurrent requests
+     * cannot both pass the limit check.
      * @param userId the user ID
      * @throws RuntimeException if user has reached query limit
      */
     @Transactional
     public void incrementQueryCount(Long userId) {
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        if (user.getQueryCount() >= MAX_QUERY_LIMIT) {
+        int updated = userRepository.incrementQueryCountIfBelow(userId, MAX_QUERY_LIMIT, LocalDateTime.now());
+        if (updated == 0) {
+            // Only the rejected path pays for a second query, to tell the two causes apart
+            getQueryCount(userId);
             throw new RuntimeException("You have reached your query limit of " + MAX_QUERY_LIMIT + " questions");
         }
-        
-        user.setQueryCount(user.getQueryCount() + 1);
-        userRepository.save(user);
     }
     
     /**
@@ -51,8 +49,11 @@ public class UserService {
      * @return number of queries remaining
      */
     public int getRemainingQueries(Long userId) {
-        User user = userRepository.findById(userId)
+        return Math.max(0, MAX_QUERY_LIMIT - getQueryCount(userId));
+    }
+    
+    private int getQueryCount(Long userId) {
+        return userRepository.findQueryCountById(userId)
             .orElseThrow(() -> new RuntimeException("User not found"));
-        return Math.max(0, MAX_QUERY_LIMIT - user.getQueryCount());
     }
 }
@@ -0,0 +1,30 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.llm.Embedding;
+
+import java.util.List;
+
+/**
+ * Nearest neighbour search over RAG chunk embeddings
+ * The implementation is chosen with rag.index.backend (pgvector or hnsw).
+ */
+public interface VectorIndex {
+    
+    /**
+     * Find the chunks closest to the query embedding by cosine distance
+     * 
+     * @param modpack Only return chunks of this modpack, or null for all chunks
+     * @return At most topK chunks with their distance, closest first
+     */
+    List<RetrievedChunk> search(Embedding query, String modpack, int topK);
+    
+    /**
+     * Search, keeping only chunks with cosine similarity of at least minSimilarity
+     */
+    default List<RetrievedChunk> search(Embedding query, String modpack, int topK, double minSimilarity) {
+        return search(query, modpack, topK).stream()
+            .filter(chunk -> chunk.getSimilarity() >= minSimilarity)
+            .toList();
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.repository.RagChunkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Creates and maintains the approximate-nearest-neighbour index on rag_chunk.embedding
+ * Supports pgvector HNSW and IVFFlat indexes with cosine distance, selected by rag.index.type.
+ * Also provides the per-query search settings (hnsw.ef_search / ivfflat.probes), and
+ * maintains the GIN full-text index used by the lexical leg of hybrid retrieval.
+ */
+@Service
+public class VectorIndexManager implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexManager.class);
+    
+    static final String INDEX_NAME = "rag_chunk_embedding_ann_idx";
+    private static final String NEW_INDEX_NAME = INDEX_NAME + "_new";
+    static final String TEXT_INDEX_NAME = "rag_chunk_text_search_idx";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final String indexType;
+    
+    // Serializes rebuilds. A monitor held across the index build would pin a virtual thread's carrier.
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    
+    @Value("${rag.index.hnsw-m:16}")
+    private int hnswM;
+    
+    @Value("${rag.index.hnsw-ef-construction:64}")
+    private int hnswEfConstruction;
+    
+    @Value("${rag.index.ivfflat-lists:100}")
+    private int ivfflatLists;
+    
+    @Value("${rag.index.ef-search:40}")
+    private int efSearch;
+    
+    @Value("${rag.index.probes:10}")
+    private int probes;
+    
+    public VectorIndexManager(JdbcTemplate jdbcTemplate, @Value("${rag.index.type:hnsw}") String indexType) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.indexType = indexType.trim().toLowerCase(Locale.ROOT);
+        if (!this.indexType.equals("hnsw") && !this.indexType.equals("ivfflat")) {
+            throw new IllegalStateException("rag.index.type must be hnsw or ivfflat, got: " + indexType);
+        }
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            ensureIndex();
+        } catch (Exception e) {
+            // Similarity search still works without the index, just with a sequential scan
+            logger.error("Failed to create vector index {}: {}", INDEX_NAME, e.getMessage(), e);
+        }
+        try {
+            ensureTextSearchIndex();
+        } catch (Exception e) {
+            // Full-text search still works without the index, just with a sequential scan
+            logger.error("Failed to create text search index {}: {}", TEXT_INDEX_NAME, e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Create the full-text index if missing, replacing one left invalid by an interrupted build
+     */
+    public void ensureTextSearchIndex() {
+        IndexState state = currentIndexState(TEXT_INDEX_NAME);
+        if (state != null && state.valid()) {
+            return;
+        }
+        if (state != null) {
+            logger.warn("Text search index {} is invalid, recreating it", TEXT_INDEX_NAME);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + TEXT_INDEX_NAME);
+        }
+        
+        logger.info("Creating text search index {} on rag_chunk", TEXT_INDEX_NAME);
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY " + TEXT_INDEX_NAME + " ON rag_chunk USING gin (("
+            + RagChunkRepository.TEXT_SEARCH_DOCUMENT + "))");
+    }
+    
+    /**
+     * Create the index if missing, or rebuild it if it is invalid or was built with
+     * a different type or parameters than configured
+     */
+    public void ensureIndex() {
+        IndexState state = currentIndexState(INDEX_NAME);
+        
+        if (state == null) {
+            logger.info("Creating {} vector index {} on rag_chunk.embedding", indexType, INDEX_NAME);
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON rag_chunk " + indexMethodClause());
+        } else if (!state.valid() || !matchesConfiguration(state.definition())) {
+            logger.info("Vector index {} is invalid or outdated ({}), rebuilding", INDEX_NAME, state.definition());
+            rebuildIndex();
+        } else {
+            logger.info("Vector index {} is up to date", INDEX_NAME);
+        }
+    }
+    
+    /**
+     * Rebuild the index with the configured type and parameters without blocking writes
+     * Builds a new index concurrently and swaps it in, so searches keep using the old
+     * index until the new one is ready. Needed for IVFFlat after large corpus changes,
+     * since its lists are only trained at build time.
+     * 
+     * @return the definition of the new index
+     */
+    public String rebuildIndex() {
+        rebuildLock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            
+            // Leftover from an interrupted rebuild would be INVALID
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + NEW_INDEX_NAME);
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY " + NEW_INDEX_NAME + " ON rag_chunk " + indexMethodClause());
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+            jdbcTemplate.execute("ALTER INDEX " + NEW_INDEX_NAME + " RENAME TO " + INDEX_NAME);
+            
+            IndexState state = currentIndexState(INDEX_NAME);
+            logger.info("Rebuilt vector index {} in {}ms", INDEX_NAME, System.currentTimeMillis() - start);
+            return state != null ? state.definition() : null;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+    
+    /**
+     * Current index definition, or null if the index does not exist
+     */
+    public String getIndexDefinition() {
+        IndexState state = currentIndexState(INDEX_NAME);
+        return state != null ? state.definition() : null;
+    }
+    
+    public String getIndexType() {
+        return indexType;
+    }
+    
+    /**
+     * Name of the pgvector setting that trades recall for speed at query time
+     */
+    public String searchSettingName() {
+        return indexType.equals("hnsw") ? "hnsw.ef_search" : "ivfflat.probes";
+    }
+    
+    /**
+     * Value of the search setting for a query returning {@code limit} rows
+     * HNSW can never return more rows than ef_search, so it is raised to the limit if needed.
+     */
+    public String searchSettingValue(int limit) {
+        return String.valueOf(indexType.equals("hnsw") ? Math.max(efSearch, limit) : probes);
+    }
+    
+    private String indexMethodClause() {
+        if (indexType.equals("hnsw")) {
+            return "USING hnsw (embedding vector_cosine_ops) WITH (m = " + hnswM
+                + ", ef_construction = " + hnswEfConstruction + ")";
+        }
+        return "USING ivfflat (embedding vector_cosine_ops) WITH (lists = " + ivfflatLists + ")";
+    }
+    
+    /**
+     * Compare a pg_get_indexdef() string against the configured type and parameters
+     * Postgres renders the options as e.g. WITH (m='16', ef_construction='64')
+     */
+    private boolean matchesConfiguration(String definition) {
+        List<String> expected = indexType.equals("hnsw")
+            ? List.of("USING hnsw ", "vector_cosine_ops", "m='" + hnswM + "'", "ef_construction='" + hnswEfConstruction + "'")
+            : List.of("USING ivfflat ", "vector_cosine_ops", "lists='" + ivfflatLists + "'");
+        return expected.stream().allMatch(definition::contains);
+    }
+    
+    private IndexState currentIndexState(String indexName) {
+        List<IndexState> states = jdbcTemplate.query("""
+            SELECT pg_get_indexdef(i.indexrelid) AS definition, i.indisvalid AS valid
+            FROM pg_index i
+            JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE c.relname = ?
+            """,
+            (rs, rowNum) -> new IndexState(rs.getString("definition"), rs.getBoolean("valid")),
+            indexName
+        );
+        return states.isEmpty() ? null : states.get(0);
+    }
+    
+    private record IndexState(String definition, boolean valid) {}
+}
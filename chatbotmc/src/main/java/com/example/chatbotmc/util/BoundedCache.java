@@ -0,0 +1,192 @@
+package com.example.chatbotmc.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Small in-process cache bounded by entry count and time-to-live
+ * Least recently used entries are evicted once maxSize is exceeded and entries
+ * older than the TTL are dropped on access. Keeps hit/miss/eviction counters.
+ *
+ * By default the TTL counts from when an entry was written. With expireAfterAccess
+ * it counts from the last read or write instead, and idle entries are also purged
+ * from the least recently used end on every write.
+ *
+ * Guarded by a ReentrantLock rather than synchronized: the cache sits on the request path,
+ * and on JDK 21 a virtual thread waiting for a monitor pins its carrier thread.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final boolean expireAfterAccess;
+
+    // Access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<K, CacheEntry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, false);
+    }
+
+    public BoundedCache(int maxSize, Duration ttl, boolean expireAfterAccess) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    /**
+     * @return the cached value, or null if absent or expired
+     */
+    public V get(K key) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            CacheEntry<V> entry = getLive(key, now);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the cached value, or compute, store and return it when absent or expired
+     * The loader runs under the cache lock, so it must be cheap and must not touch this cache.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            CacheEntry<V> entry = getLive(key, now);
+            if (entry != null) {
+                hits.increment();
+                return entry.value;
+            }
+            misses.increment();
+            V value = loader.apply(key);
+            entries.put(key, new CacheEntry<>(value, now));
+            evictOverflow(now);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            entries.put(key, new CacheEntry<>(value, now));
+            evictOverflow(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size(), maxSize);
+    }
+
+    /**
+     * Look up an entry, dropping it if expired and refreshing its timestamp in access mode
+     * Caller must hold the lock.
+     */
+    private CacheEntry<V> getLive(K key, long now) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now - entry.touchedAt > ttlNanos) {
+            entries.remove(key);
+            evictions.increment();
+            return null;
+        }
+        if (expireAfterAccess) {
+            entry.touchedAt = now;
+        }
+        return entry;
+    }
+
+    /**
+     * Drop idle entries (access mode only) and least recently used entries until the
+     * cache is within maxSize
+     */
+    private void evictOverflow(long now) {
+        Iterator<Map.Entry<K, CacheEntry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            CacheEntry<V> eldest = it.next().getValue();
+            // In access mode the iteration order is also touchedAt order, so stop at the first live entry
+            boolean idle = expireAfterAccess && now - eldest.touchedAt > ttlNanos;
+            if (!idle && entries.size() <= maxSize) {
+                return;
+            }
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class CacheEntry<V> {
+        private final V value;
+        private long touchedAt;
+
+        private CacheEntry(V value, long touchedAt) {
+            this.value = value;
+            this.touchedAt = touchedAt;
+        }
+    }
+
+    /**
+     * Snapshot of cache counters
+     */
+    public record Stats(long hits, long misses, long evictions, int size, int maxSize) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.chatbotmc.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical Navigable Small World graph for approximate nearest neighbour search
+ * over primitive float vectors with cosine distance (same metric as pgvector's <=>).
+ * Based on Malkov &amp; Yashunin, with the neighbour selection heuristic.
+ *
+ * Nodes are identified by their insertion index. Removal is done with tombstones:
+ * deleted nodes keep routing searches but are never returned.
+ *
+ * Not thread-safe: concurrent searches are fine, but writes must be externally
+ * synchronized against everything else.
+ */
+public class HnswGraph {
+
+    private static final int MAX_LEVEL = 16;
+    private static final int[] NO_LINKS = new int[0];
+    private static final Comparator<Neighbor> CLOSEST_FIRST = Comparator.comparingDouble(Neighbor::distance);
+
+    private final int m;
+    private final int maxLinksLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    // Unit-length vectors, so cosine distance is 1 - dot product
+    private final List<float[]> vectors = new ArrayList<>();
+    // links.get(node)[level] = neighbour nodes on that level
+    private final List<int[][]> links = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswGraph(int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.m = m;
+        this.maxLinksLayer0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Insert a vector
+     *
+     * @return the node id of the new vector
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        int node = vectors.size();
+        int level = randomLevel();
+
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = NO_LINKS;
+        }
+        vectors.add(normalized);
+        links.add(nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(normalized, current, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Neighbor> candidates = searchLayer(normalized, current, efConstruction, l);
+            int[] selected = selectNeighbors(candidates, m);
+            nodeLinks[l] = selected;
+            for (int neighbor : selected) {
+                connect(neighbor, node, l);
+            }
+            current = candidates.get(0).node();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Exclude a node from search results. Its links are kept for routing.
+     */
+    public void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Find the k nearest live nodes accepted by the filter
+     *
+     * @param ef size of the dynamic candidate list; higher means better recall and slower search
+     * @return neighbours sorted by ascending cosine distance
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate filter) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+
+        float[] normalized = normalize(query);
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(normalized, current, l);
+        }
+
+        // A selective filter or many tombstones can leave fewer than k hits, so widen the beam
+        int beam = Math.max(ef, k);
+        while (true) {
+            List<Neighbor> candidates = searchLayer(normalized, current, beam, 0);
+            List<Neighbor> results = new ArrayList<>(k);
+            for (Neighbor candidate : candidates) {
+                if (!deleted.get(candidate.node()) && filter.test(candidate.node())) {
+                    results.add(candidate);
+                    if (results.size() == k) {
+                        return results;
+                    }
+                }
+            }
+            if (beam >= vectors.size()) {
+                return results;
+            }
+            beam = Math.min(beam * 2, vectors.size());
+        }
+    }
+
+    public int size() {
+        return vectors.size();
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : links.get(current)[level]) {
+                float d = distance(query, neighbor);
+                if (d < currentDistance) {
+                    current = neighbor;
+                    currentDistance = d;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer
+     *
+     * @return up to ef closest nodes found, sorted by ascending distance
+     */
+    private List<Neighbor> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(vectors.size());
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(CLOSEST_FIRST);
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(CLOSEST_FIRST.reversed());
+
+        Neighbor first = new Neighbor(start, distance(query, start));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Neighbor candidate = candidates.poll();
+            if (results.size() >= ef && candidate.distance() > results.peek().distance()) {
+                break;
+            }
+            for (int neighbor : links.get(candidate.node())[level]) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Neighbor next = new Neighbor(neighbor, d);
+                    candidates.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(CLOSEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Neighbour selection heuristic: prefer candidates that are closer to the base node than
+     * to any already selected neighbour, which keeps links spread across clusters. Pruned
+     * candidates fill remaining slots so sparse regions stay connected.
+     *
+     * @param candidates sorted by ascending distance to the base node
+     */
+    private int[] selectNeighbors(List<Neighbor> candidates, int max) {
+        List<Neighbor> selected = new ArrayList<>(max);
+        List<Neighbor> pruned = new ArrayList<>();
+
+        for (Neighbor candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            float[] candidateVector = vectors.get(candidate.node());
+            for (Neighbor chosen : selected) {
+                if (distance(candidateVector, chosen.node()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < max; i++) {
+            selected.add(pruned.get(i));
+        }
+
+        int[] result = new int[selected.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = selected.get(i).node();
+        }
+        return result;
+    }
+
+    /**
+     * Add a back link from an existing node, shrinking its neighbour list if it overflows
+     */
+    private void connect(int node, int newNeighbor, int level) {
+        int[][] nodeLinks = links.get(node);
+        int[] current = nodeLinks[level];
+        int maxLinks = level == 0 ? maxLinksLayer0 : m;
+
+        if (current.length < maxLinks) {
+            int[] extended = new int[current.length + 1];
+            System.arraycopy(current, 0, extended, 0, current.length);
+            extended[current.length] = newNeighbor;
+            nodeLinks[level] = extended;
+            return;
+        }
+
+        float[] base = vectors.get(node);
+        List<Neighbor> candidates = new ArrayList<>(current.length + 1);
+        for (int neighbor : current) {
+            candidates.add(new Neighbor(neighbor, distance(base, neighbor)));
+        }
+        candidates.add(new Neighbor(newNeighbor, distance(base, newNeighbor)));
+        candidates.sort(CLOSEST_FIRST);
+        nodeLinks[level] = selectNeighbors(candidates, maxLinks);
+    }
+
+    private int randomLevel() {
+        double level = -Math.log(1 - random.nextDouble()) * levelMultiplier;
+        return (int) Math.min(level, MAX_LEVEL);
+    }
+
+    private float distance(float[] query, int node) {
+        float[] vector = vectors.get(node);
+        float dot = 0;
+        for (int i = 0; i < vector.length; i++) {
+            dot += query[i] * vector[i];
+        }
+        return 1 - dot;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * A node and its cosine distance to the query
+     */
+    public record Neighbor(int node, float distance) {}
+}
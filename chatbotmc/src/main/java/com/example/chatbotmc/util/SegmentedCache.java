@@ -0,0 +1,84 @@
+package com.example.chatbotmc.util;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * BoundedCache split into independently locked segments by key hash
+ * For caches hit on every request, where a single lock would serialize all callers.
+ * Size and LRU order are per segment, so the total stays within maxSize while eviction
+ * order is only approximately global.
+ */
+public class SegmentedCache<K, V> {
+
+    private final BoundedCache<K, V>[] segments;
+    private final int maxSize;
+
+    @SuppressWarnings("unchecked")
+    public SegmentedCache(int segmentCount, int maxSize, Duration ttl, boolean expireAfterAccess) {
+        if (segmentCount <= 0 || Integer.bitCount(segmentCount) != 1) {
+            throw new IllegalArgumentException("segmentCount must be a positive power of two");
+        }
+        if (maxSize < segmentCount) {
+            throw new IllegalArgumentException("maxSize must be at least segmentCount");
+        }
+        this.maxSize = maxSize;
+        this.segments = new BoundedCache[segmentCount];
+        int segmentSize = maxSize / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new BoundedCache<>(segmentSize, ttl, expireAfterAccess);
+        }
+    }
+
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * @see BoundedCache#computeIfAbsent(Object, Function)
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        return segmentFor(key).computeIfAbsent(key, loader);
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    public void invalidate(K key) {
+        segmentFor(key).invalidate(key);
+    }
+
+    public int size() {
+        int size = 0;
+        for (BoundedCache<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Counters summed over all segments
+     */
+    public BoundedCache.Stats stats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        int size = 0;
+        for (BoundedCache<K, V> segment : segments) {
+            BoundedCache.Stats stats = segment.stats();
+            hits += stats.hits();
+            misses += stats.misses();
+            evictions += stats.evictions();
+            size += stats.size();
+        }
+        return new BoundedCache.Stats(hits, misses, evictions, size, maxSize);
+    }
+
+    private BoundedCache<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        // Spread high bits down, as HashMap does, before masking
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+}
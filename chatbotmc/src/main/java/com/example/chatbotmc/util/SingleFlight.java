@@ -0,0 +1,122 @@
+package com.example.chatbotmc.util;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with the same key into one in-flight call
+ * The first caller for a key runs the call; callers arriving while it is still running wait
+ * for it and get the same result or exception. Once it completes the key is released, so
+ * results are never reused afterwards (that is what the caches are for).
+ * Blocking and reactive callers share the same in-flight calls.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * Run the call, or wait for the identical one already in flight
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = join(key, flight);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        try {
+            V value = call.get();
+            complete(key, flight, value, null);
+            return value;
+        } catch (RuntimeException | Error e) {
+            complete(key, flight, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reactive variant of execute; an empty result is shared as empty
+     * The shared call is subscribed independently of any caller, so one caller cancelling
+     * does not cancel it for the others.
+     */
+    public Mono<V> executeAsync(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = join(key, flight);
+            if (existing != null) {
+                return Mono.fromFuture(existing, true);
+            }
+
+            try {
+                call.get().subscribe(
+                    value -> complete(key, flight, value, null),
+                    error -> complete(key, flight, null, error),
+                    () -> complete(key, flight, null, null)
+                );
+            } catch (RuntimeException e) {
+                // Assembling the call failed; waiting callers must not hang on it
+                complete(key, flight, null, e);
+            }
+            return Mono.fromFuture(flight, true);
+        });
+    }
+
+    public Stats stats() {
+        return new Stats(calls.sum(), collapsed.sum(), inFlight.size());
+    }
+
+    /**
+     * Register the flight for the key, or return the one already registered
+     */
+    private CompletableFuture<V> join(K key, CompletableFuture<V> flight) {
+        calls.increment();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            collapsed.increment();
+        }
+        return existing;
+    }
+
+    private void complete(K key, CompletableFuture<V> flight, V value, Throwable error) {
+        // Release the key first so later callers start a fresh call
+        inFlight.remove(key, flight);
+        if (error != null) {
+            flight.completeExceptionally(error);
+        } else {
+            // A second signal (value then completion) is ignored by the future
+            flight.complete(value);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        throw new CompletionException(cause);
+    }
+
+    /**
+     * Counters: calls requested, calls served by another caller's flight, flights running now
+     */
+    public record Stats(long calls, long collapsed, int inFlight) {
+
+        public double collapseRate() {
+            return calls == 0 ? 0.0 : (double) collapsed / calls;
+        }
+    }
+}
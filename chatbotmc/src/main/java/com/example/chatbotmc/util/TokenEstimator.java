@@ -0,0 +1,39 @@
+package com.example.chatbotmc.util;
+
+/**
+ * Approximate token count for LLM prompts, without a model tokenizer
+ * Each run of letters or digits counts one token per started 6 characters and every other
+ * non-space character counts one. On English documentation this lands slightly above what
+ * SentencePiece/BPE tokenizers report, so budgets based on it err on the safe side.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_WORD_TOKEN = 6;
+
+    private TokenEstimator() {}
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                run++;
+                continue;
+            }
+            tokens += wordTokens(run);
+            run = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + wordTokens(run);
+    }
+
+    private static int wordTokens(int length) {
+        return (length + CHARS_PER_WORD_TOKEN - 1) / CHARS_PER_WORD_TOKEN;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.chatbotmc.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pushes millions of distinct client IPs through the interceptor at the production default
+ * rate-limit.max-clients and checks that used heap after GC stops growing once the bucket
+ * store is full.
+ *
+ * Opt-in: mvn test -Dtest=RateLimitInterceptorLoadTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RateLimitInterceptorLoadTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(RateLimitInterceptorLoadTest.class);
+
+	private static final int MAX_CLIENTS = 100_000;
+	private static final int WARM_UP_CLIENTS = 500_000;
+	private static final int DISTINCT_CLIENTS = 3_000_000;
+	// Headroom for GC noise; a leak of even 100 bytes per address would be 250 MB here
+	private static final long MAX_HEAP_GROWTH_BYTES = 16L * 1024 * 1024;
+
+	@Test
+	void heapStaysFlatUnderMillionsOfUniqueIps() throws Exception {
+		RateLimitInterceptor interceptor = new RateLimitInterceptor(MAX_CLIENTS, 5);
+
+		// Fill the store well past its bound before taking the baseline
+		sendRequests(interceptor, 0, WARM_UP_CLIENTS);
+		long baseline = usedHeapAfterGc();
+
+		sendRequests(interceptor, WARM_UP_CLIENTS, DISTINCT_CLIENTS);
+		long after = usedHeapAfterGc();
+
+		logger.info("{} distinct IPs, max-clients {}: used heap {} MB after warm-up, {} MB at the end",
+			DISTINCT_CLIENTS, MAX_CLIENTS, baseline / (1024 * 1024), after / (1024 * 1024));
+		// Full store at both readings, so the baseline already holds MAX_CLIENTS buckets
+		assertThat(interceptor.getGeneralStoreStats().size()).isBetween(MAX_CLIENTS * 9 / 10, MAX_CLIENTS);
+		assertThat(after - baseline)
+			.as("heap growth over %d further IPs", DISTINCT_CLIENTS - WARM_UP_CLIENTS)
+			.isLessThan(MAX_HEAP_GROWTH_BYTES);
+	}
+
+	private static void sendRequests(RateLimitInterceptor interceptor, int from, int to) throws Exception {
+		for (int i = from; i < to; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/conversations");
+			// Public addresses only: private ones are ignored in X-Forwarded-For
+			request.addHeader("X-Forwarded-For", "203." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff));
+			interceptor.preHandle(request, new MockHttpServletResponse(), null);
+		}
+	}
+
+	private static long usedHeapAfterGc() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// System.gc() is only a request, so settle on the lowest of a few readings
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(100);
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+}
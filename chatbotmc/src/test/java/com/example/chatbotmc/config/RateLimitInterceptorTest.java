@@ -0,0 +1,48 @@
+package com.example.chatbotmc.config;
+
+import com.example.chatbotmc.util.BoundedCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Floods the interceptor with distinct client IPs, as a spoofed X-Forwarded-For attack would,
+ * and checks that the bucket store stays bounded instead of growing with every new address.
+ */
+class RateLimitInterceptorTest {
+
+	private static final int MAX_CLIENTS = 1_000;
+	private static final int DISTINCT_CLIENTS = 10 * MAX_CLIENTS;
+
+	@Test
+	void bucketStoreStaysBoundedUnderIpChurn() throws Exception {
+		RateLimitInterceptor interceptor = new RateLimitInterceptor(MAX_CLIENTS, 5);
+
+		for (int i = 0; i < DISTINCT_CLIENTS; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/conversations");
+			request.addHeader("X-Forwarded-For", "203." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff));
+			assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+		}
+
+		BoundedCache.Stats stats = interceptor.getGeneralStoreStats();
+		assertThat(stats.size()).isLessThanOrEqualTo(MAX_CLIENTS);
+		assertThat(stats.size()).isGreaterThan(MAX_CLIENTS * 9 / 10);
+		assertThat(stats.evictions()).isEqualTo((long) DISTINCT_CLIENTS - stats.size());
+		assertThat(interceptor.getAuthStoreStats().size()).isZero();
+	}
+
+	@Test
+	void recentClientKeepsItsBucket() throws Exception {
+		RateLimitInterceptor interceptor = new RateLimitInterceptor(MAX_CLIENTS, 5);
+
+		MockHttpServletRequest login = new MockHttpServletRequest("POST", "/api/auth/login");
+		login.setRemoteAddr("198.51.100.7");
+		assertThat(interceptor.preHandle(login, new MockHttpServletResponse(), null)).isTrue();
+
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		assertThat(interceptor.preHandle(login, rejected, null)).isFalse();
+		assertThat(rejected.getStatus()).isEqualTo(429);
+	}
+}
@@ -0,0 +1,167 @@
+package com.example.chatbotmc.llm.gemini;
+
+import com.example.chatbotmc.exception.LlmRequestRejectedException;
+import com.example.chatbotmc.exception.LlmUnavailableException;
+import com.example.chatbotmc.util.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiCallPolicyTest {
+
+	private static final Duration OPEN_DURATION = Duration.ofMillis(200);
+
+	@Test
+	void retriesOverloadedResponsesThenSucceeds() {
+		GeminiCallPolicy policy = policy(Duration.ofSeconds(5), 10);
+		AtomicInteger attempts = new AtomicInteger();
+
+		String result = policy.apply(() -> attempts.incrementAndGet() < 3
+			? Mono.error(status(503))
+			: Mono.just("answer")).block();
+
+		assertThat(result).isEqualTo("answer");
+		assertThat(attempts).hasValue(3);
+		assertThat(policy.stats().retries()).isEqualTo(2);
+	}
+
+	@Test
+	void doesNotRetryOrTripOnBadRequests() {
+		GeminiCallPolicy policy = policy(Duration.ofSeconds(5), 10);
+		AtomicInteger attempts = new AtomicInteger();
+
+		for (int i = 0; i < 10; i++) {
+			assertThatThrownBy(() -> policy.apply(() -> {
+				attempts.incrementAndGet();
+				return Mono.error(status(400));
+			}).block()).isInstanceOf(LlmRequestRejectedException.class);
+		}
+
+		assertThat(attempts).hasValue(10);
+		assertThat(policy.stats().circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	void rejectedRequestsDoNotExposeTheApiKey() {
+		GeminiCallPolicy policy = policy(Duration.ofSeconds(5), 10);
+		HttpRequest request = new MockClientHttpRequest(HttpMethod.POST,
+			"/v1beta/models/gemini-2.0-flash:generateContent?key=secret-api-key");
+
+		for (int code : new int[] {400, 403, 500}) {
+			WebClientResponseException rejected = WebClientResponseException.create(
+				code, "status " + code, null, null, null, request);
+			assertThatThrownBy(() -> policy.apply(() -> Mono.<String>error(rejected)).block())
+				.isInstanceOfAny(LlmRequestRejectedException.class, LlmUnavailableException.class)
+				.message()
+				.doesNotContain("key=")
+				.doesNotContain("secret-api-key")
+				.doesNotContain("/v1beta");
+		}
+	}
+
+	@Test
+	void opensOnFailuresFailsFastAndRecoversThroughHalfOpen() throws Exception {
+		GeminiCallPolicy policy = policy(Duration.ofSeconds(5), 10);
+		AtomicInteger attempts = new AtomicInteger();
+
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> policy.apply(() -> {
+				attempts.incrementAndGet();
+				return Mono.error(status(500));
+			}).block()).isInstanceOf(LlmUnavailableException.class);
+		}
+		assertThat(policy.stats().circuit().state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+		// Open: rejected without reaching Gemini, with a retry hint
+		assertThatThrownBy(() -> policy.apply(() -> {
+			attempts.incrementAndGet();
+			return Mono.just("answer");
+		}).block())
+			.isInstanceOfSatisfying(LlmUnavailableException.class, e -> assertThat(e.getRetryAfter()).isPositive());
+		assertThat(attempts).hasValue(4);
+
+		Thread.sleep(OPEN_DURATION.toMillis() + 50);
+
+		// Half-open: one successful probe closes the circuit
+		assertThat(policy.apply(() -> Mono.just("answer")).block()).isEqualTo("answer");
+		assertThat(policy.stats().circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	void malformedResponsesAreUpstreamFailures() {
+		GeminiCallPolicy policy = policy(Duration.ofSeconds(5), 10);
+
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> policy.apply(() -> Mono.<String>error(
+				new MalformedResponseException("Gemini response parsing failed.", null))).block())
+				.isInstanceOf(LlmUnavailableException.class);
+		}
+
+		assertThat(policy.stats().circuit().state()).isEqualTo(CircuitBreaker.State.OPEN);
+	}
+
+	@Test
+	void timesOutSlowCalls() {
+		GeminiCallPolicy policy = policy(Duration.ofMillis(50), 10);
+
+		assertThatThrownBy(() -> policy.apply(Mono::<String>never).block())
+			.isInstanceOf(LlmUnavailableException.class);
+		assertThat(policy.stats().timeouts()).isEqualTo(1);
+	}
+
+	@Test
+	void bulkheadRejectsCallsBeyondTheLimit() {
+		GeminiCallPolicy policy = policy(Duration.ofSeconds(5), 1);
+		Sinks.One<String> slowCall = Sinks.one();
+
+		policy.apply(slowCall::asMono).subscribe();
+
+		assertThatThrownBy(() -> policy.apply(() -> Mono.just("answer")).block())
+			.isInstanceOf(LlmUnavailableException.class)
+			.hasMessageContaining("busy");
+		assertThat(policy.stats().bulkheadRejections()).isEqualTo(1);
+
+		slowCall.tryEmitValue("done");
+		assertThat(policy.stats().inFlight()).isZero();
+	}
+
+	@Test
+	void connectionPoolWaitsThatRunOutAreBusyNotFailures() {
+		GeminiCallPolicy policy = policy(Duration.ofSeconds(5), 10);
+		WebClientRequestException noConnection = new WebClientRequestException(
+			new PoolAcquireTimeoutException(Duration.ofSeconds(10)), HttpMethod.POST, URI.create("/"), new HttpHeaders());
+
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> policy.apply(() -> Mono.<String>error(noConnection)).block())
+				.isInstanceOf(LlmUnavailableException.class)
+				.hasMessageContaining("busy");
+		}
+
+		// Our pool being full is not Gemini failing
+		assertThat(policy.stats().circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(policy.stats().timeouts()).isZero();
+	}
+
+	private static GeminiCallPolicy policy(Duration timeout, int maxConcurrent) {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(50, 4, 4, OPEN_DURATION, 1);
+		return new GeminiCallPolicy("test", timeout, maxConcurrent, circuitBreaker, 2, Duration.ofMillis(1), Duration.ofMillis(5));
+	}
+
+	private static WebClientResponseException status(int code) {
+		return WebClientResponseException.create(code, "status " + code, null, null, null);
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.util.TokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContextAssemblerTest {
+
+	private static final String DRAGONS = "Dragons hatch from eggs placed near a heat source. "
+		+ "Feed a hatchling fish to tame it. A tamed dragon follows its owner.";
+
+	@Test
+	void contextStaysWithinBudgetAndCutsOnSentenceBoundary() {
+		String longText = "Sentence number one is about smelting ore. ".repeat(200);
+		ContextAssembler assembler = new ContextAssembler(200, 20, 0.8);
+
+		ContextAssembler.AssembledContext context = assembler.assemble(List.of(chunk(DRAGONS), chunk(longText)));
+
+		assertThat(context.chunks()).isEqualTo(2);
+		assertThat(context.tokens()).isLessThanOrEqualTo(200);
+		assertThat(TokenEstimator.estimate(context.text())).isLessThanOrEqualTo(200);
+		assertThat(context.text().strip()).endsWith("smelting ore.");
+		assertThat(assembler.stats().truncatedChunks()).isEqualTo(1);
+	}
+
+	@Test
+	void nearDuplicatePassagesAreDropped() {
+		String paraphrase = DRAGONS.replace("A tamed dragon", "The tamed dragon");
+		ContextAssembler assembler = new ContextAssembler(1500, 40, 0.6);
+
+		ContextAssembler.AssembledContext context = assembler.assemble(List.of(
+			chunk(DRAGONS), chunk(paraphrase), chunk("Soul sand slows down mobs walking on it.")));
+
+		assertThat(context.chunks()).isEqualTo(2);
+		assertThat(context.text()).contains("Soul sand").doesNotContain("The tamed dragon");
+		assertThat(assembler.stats().duplicateChunks()).isEqualTo(1);
+	}
+
+	@Test
+	void chunksThatDoNotFitAreLeftOut() {
+		ContextAssembler assembler = new ContextAssembler(40, 30, 0.8);
+
+		ContextAssembler.AssembledContext context = assembler.assemble(List.of(chunk(DRAGONS), chunk(DRAGONS + " Again")));
+
+		assertThat(context.chunks()).isZero();
+		assertThat(context.text()).isEmpty();
+		assertThat(assembler.stats().overBudgetChunks()).isEqualTo(2);
+	}
+
+	@Test
+	void chunkWithoutSentencePunctuationIsCutOnAWordBoundary() {
+		// An inline recipe list: one "sentence" far longer than the whole budget
+		String list = "4 obsidian, 2 blaze rods, 1 nether star, ".repeat(100);
+		ContextAssembler assembler = new ContextAssembler(200, 20, 0.8);
+
+		ContextAssembler.AssembledContext context = assembler.assemble(List.of(chunk(list), chunk(DRAGONS)));
+
+		assertThat(context.chunks()).isEqualTo(1);
+		assertThat(context.tokens()).isLessThanOrEqualTo(200);
+		assertThat(context.text()).contains("4 obsidian, 2 blaze rods");
+		assertThat(context.text().strip()).matches("(?s).*(obsidian|rods|star),?");
+		assertThat(assembler.stats().truncatedChunks()).isEqualTo(1);
+	}
+
+	private static RetrievedChunk chunk(String text) {
+		RetrievedChunk chunk = mock(RetrievedChunk.class);
+		when(chunk.getText()).thenReturn(text);
+		when(chunk.getModName()).thenReturn("Dragon Mounts");
+		return chunk;
+	}
+}
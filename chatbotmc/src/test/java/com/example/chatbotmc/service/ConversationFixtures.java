@@ -0,0 +1,55 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.entity.ChatMessage;
+import com.example.chatbotmc.entity.Conversation;
+import com.example.chatbotmc.entity.User;
+import com.example.chatbotmc.repository.ChatMessageRepository;
+import com.example.chatbotmc.repository.ConversationRepository;
+import com.example.chatbotmc.repository.UserRepository;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ConversationService over mocked repositories: user 1 owns conversation 10, saved messages
+ * get increasing ids and the conversation has no earlier history
+ */
+final class ConversationFixtures {
+
+	static final long USER_ID = 1L;
+	static final long CONVERSATION_ID = 10L;
+
+	private ConversationFixtures() {
+	}
+
+	static ConversationService conversationService() {
+		User user = new User();
+		user.setId(USER_ID);
+
+		Conversation conversation = new Conversation();
+		conversation.setId(CONVERSATION_ID);
+		conversation.setUser(user);
+
+		UserRepository userRepository = mock(UserRepository.class);
+		when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+
+		ConversationRepository conversationRepository = mock(ConversationRepository.class);
+		when(conversationRepository.save(any(Conversation.class))).thenReturn(conversation);
+		when(conversationRepository.findByIdAndUserId(anyLong(), anyLong())).thenReturn(Optional.of(conversation));
+
+		AtomicLong messageIds = new AtomicLong();
+		ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+		when(chatMessageRepository.save(any(ChatMessage.class))).thenAnswer(invocation -> {
+			ChatMessage message = invocation.getArgument(0);
+			message.setId(messageIds.incrementAndGet());
+			return message;
+		});
+
+		return new ConversationService(conversationRepository, chatMessageRepository, userRepository);
+	}
+}
@@ -0,0 +1,106 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.ChatMessageDTO;
+import com.example.chatbotmc.entity.MessageRole;
+import com.example.chatbotmc.llm.LlmClient;
+import com.example.chatbotmc.service.ConversationService.ConversationHistory;
+import com.example.chatbotmc.util.TokenEstimator;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationMemoryServiceTest {
+
+	private final ConversationService conversationService = mock(ConversationService.class);
+	private final LlmClient llmClient = mock(LlmClient.class);
+
+	@Test
+	void recentTurnsAreQuotedOldestFirstWithinBudget() {
+		// Two turns quoted verbatim, newest first as the repository returns them
+		List<ChatMessageDTO> newestFirst = List.of(
+			message(4, MessageRole.ASSISTANT, "Feed it raw fish. " + "It grows over several days. ".repeat(40)),
+			message(3, MessageRole.USER, "How do I tame it?"),
+			message(2, MessageRole.ASSISTANT, "Dragons hatch from eggs placed near fire."),
+			message(1, MessageRole.USER, "Where do dragons come from?"));
+		when(conversationService.getHistory(10L, 1L, 5L, 4 + 20))
+			.thenReturn(new ConversationHistory("The user plays Ice and Fire.", 0, newestFirst));
+		ConversationMemoryService memory = memory(2, 120);
+
+		ConversationMemoryService.ConversationContext context = memory.load(10L, 1L, 5L);
+
+		assertThat(context.summary()).isEqualTo("The user plays Ice and Fire.");
+		int tokens = TokenEstimator.estimate(context.summary())
+			+ context.recentMessages().stream().mapToInt(TokenEstimator::estimate).sum();
+		assertThat(tokens).isLessThanOrEqualTo(120);
+		// The budget runs out on the long answer, so older turns are left out
+		assertThat(context.recentMessages()).hasSize(1);
+		assertThat(context.recentMessages().getFirst()).startsWith("Assistant: Feed it raw fish.");
+		verify(conversationService, never()).getUnsummarizedMessages(eq(10L), anyInt());
+		// Follow-ups are retrieved together with the latest earlier question
+		assertThat(context.retrievalQuery("and the ice one?")).isEqualTo("How do I tame it?\nand the ice one?");
+	}
+
+	@Test
+	void conversationJustPastTheWindowIsQuotedNotSummarized() {
+		// Five messages: one more than two turns, far short of a batch of 20
+		List<ChatMessageDTO> newestFirst = new ArrayList<>();
+		for (long id = 5; id >= 1; id--) {
+			newestFirst.add(message(id, id % 2 == 1 ? MessageRole.USER : MessageRole.ASSISTANT, "Message " + id + "."));
+		}
+		when(conversationService.getHistory(10L, 1L, 6L, 4 + 20))
+			.thenReturn(new ConversationHistory(null, 0, newestFirst));
+		ConversationMemoryService memory = memory(2, 1000);
+
+		ConversationMemoryService.ConversationContext context = memory.load(10L, 1L, 6L);
+
+		assertThat(context.recentMessages()).hasSize(5).first().isEqualTo("User: Message 1.");
+		verify(conversationService, never()).getUnsummarizedMessages(eq(10L), anyInt());
+		verify(llmClient, never()).generate(anyString());
+	}
+
+	@Test
+	void summarizeFoldsOnlyMessagesOlderThanTheVerbatimWindow() {
+		List<ChatMessageDTO> oldestFirst = new ArrayList<>();
+		for (long id = 11; id <= 16; id++) {
+			oldestFirst.add(message(id, id % 2 == 1 ? MessageRole.USER : MessageRole.ASSISTANT, "Message " + id + "."));
+		}
+		// One full batch of four past the window, then two left that only fill the window
+		when(conversationService.getUnsummarizedMessages(10L, 4 + 2))
+			.thenReturn(new ConversationHistory("Earlier summary.", 10, oldestFirst))
+			.thenReturn(new ConversationHistory("New summary.", 14, oldestFirst.subList(4, 6)));
+		when(llmClient.generate(anyString())).thenReturn("New summary.");
+		when(conversationService.saveSummary(10L, "New summary.", 14L, 10L)).thenReturn(true);
+		ConversationMemoryService memory = memory(1, 1000, 4);
+
+		memory.summarize(10L);
+
+		verify(llmClient).generate(contains("User: Message 13."));
+		verify(llmClient, never()).generate(contains("Message 15."));
+		verify(conversationService).saveSummary(10L, "New summary.", 14L, 10L);
+	}
+
+	private ConversationMemoryService memory(int recentTurns, int maxTokens) {
+		return memory(recentTurns, maxTokens, 20);
+	}
+
+	private ConversationMemoryService memory(int recentTurns, int maxTokens, int summaryBatchSize) {
+		return new ConversationMemoryService(conversationService, llmClient, Schedulers.immediate(),
+			true, recentTurns, maxTokens, 300, summaryBatchSize);
+	}
+
+	private static ChatMessageDTO message(long id, MessageRole role, String content) {
+		return new ChatMessageDTO(id, content, role, null);
+	}
+}
@@ -0,0 +1,172 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.llm.LlmClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs many chats concurrently against a transaction manager that counts open transactions,
+ * each of which would hold a pooled JDBC connection with the real JpaTransactionManager.
+ * While every chat is blocked inside the LLM call no transaction may be open.
+ */
+@SpringJUnitConfig(LlmServiceConcurrencyTest.TestConfig.class)
+class LlmServiceConcurrencyTest {
+
+	private static final int CONCURRENT_CHATS = 32;
+
+	@Autowired
+	private LlmService llmService;
+
+	@Autowired
+	private CountingTransactionManager transactionManager;
+
+	@Autowired
+	private BlockingLlmClient llmClient;
+
+	@Test
+	void concurrentChatsHoldNoTransactionDuringGeneration() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_CHATS);
+		try {
+			List<Future<?>> chats = new ArrayList<>();
+			for (int i = 0; i < CONCURRENT_CHATS; i++) {
+				// Distinct questions, identical ones would be coalesced into a single generate call
+				String question = "How do I tame dragon #" + i + "?";
+				chats.add(executor.submit(() -> llmService.chatWithHistory(1L, question, null)));
+			}
+
+			assertThat(llmClient.allGenerating.await(10, TimeUnit.SECONDS))
+				.as("all chats reached the LLM call")
+				.isTrue();
+			int openDuringGeneration = transactionManager.active.get();
+			llmClient.release.countDown();
+
+			for (Future<?> chat : chats) {
+				chat.get(10, TimeUnit.SECONDS);
+			}
+
+			assertThat(openDuringGeneration).isZero();
+			assertThat(transactionManager.active.get()).isZero();
+			// Conversation, user message, history read and assistant message each commit on their own
+			assertThat(transactionManager.begun.get()).isEqualTo(4L * CONCURRENT_CHATS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Configuration
+	@EnableTransactionManagement
+	static class TestConfig {
+
+		@Bean
+		CountingTransactionManager transactionManager() {
+			return new CountingTransactionManager();
+		}
+
+		@Bean
+		BlockingLlmClient llmClient() {
+			return new BlockingLlmClient(CONCURRENT_CHATS);
+		}
+
+		@Bean
+		ConversationService conversationService() {
+			return ConversationFixtures.conversationService();
+		}
+
+		@Bean
+		LlmService llmService(LlmClient llmClient, ConversationService conversationService) {
+			// RAG and the answer cache are off: every chat reaches the LLM with the plain Minecraft prompt
+			ConversationMemoryService memory = new ConversationMemoryService(conversationService, llmClient,
+				Schedulers.immediate(), true, 4, 1000, 300, 20);
+			return new LlmService(llmClient, conversationService, mock(RagService.class),
+				mock(EmbeddingService.class), new SemanticAnswerCache(false, 0.95, 1, 1), memory);
+		}
+	}
+
+	/**
+	 * Blocks every generate call until all expected callers are inside it
+	 */
+	static class BlockingLlmClient implements LlmClient {
+
+		final CountDownLatch allGenerating;
+		final CountDownLatch release = new CountDownLatch(1);
+
+		BlockingLlmClient(int callers) {
+			this.allGenerating = new CountDownLatch(callers);
+		}
+
+		@Override
+		public String generate(String prompt) {
+			allGenerating.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "Feed it fish.";
+		}
+
+		@Override
+		public Flux<String> stream(String prompt) {
+			return Flux.just(generate(prompt));
+		}
+	}
+
+	/**
+	 * Transaction manager that only tracks how many transactions are open
+	 */
+	static class CountingTransactionManager extends AbstractPlatformTransactionManager {
+
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicLong begun = new AtomicLong();
+
+		@Override
+		protected Object doGetTransaction() {
+			return new Object();
+		}
+
+		@Override
+		protected boolean isExistingTransaction(Object transaction) {
+			// Nested @Transactional calls join the outer transaction instead of opening another
+			return TransactionSynchronizationManager.isActualTransactionActive();
+		}
+
+		@Override
+		protected void doBegin(Object transaction, TransactionDefinition definition) {
+			begun.incrementAndGet();
+			active.incrementAndGet();
+		}
+
+		@Override
+		protected void doCommit(DefaultTransactionStatus status) {
+			active.decrementAndGet();
+		}
+
+		@Override
+		protected void doRollback(DefaultTransactionStatus status) {
+			active.decrementAndGet();
+		}
+	}
+}
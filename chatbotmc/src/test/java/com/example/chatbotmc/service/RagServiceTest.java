@@ -0,0 +1,203 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.dto.RetrievedChunk;
+import com.example.chatbotmc.llm.Embedding;
+import com.example.chatbotmc.repository.RagChunkRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RagServiceTest {
+
+	@Test
+	void fusionRanksChunksFoundByBothSearchesFirst() {
+		List<RetrievedChunk> vector = List.of(chunk(1), chunk(2), chunk(3));
+		List<RetrievedChunk> lexical = List.of(chunk(4), chunk(3), chunk(5));
+
+		List<RetrievedChunk> fused = RagService.fuseRankings(List.of(vector, lexical), 60, 4);
+
+		assertThat(fused).extracting(RetrievedChunk::getId).containsExactly(3L, 1L, 4L, 2L);
+	}
+
+	@Test
+	void fusionWithOneEmptyRankingKeepsTheOtherOrder() {
+		List<RetrievedChunk> lexical = List.of(chunk(7), chunk(8), chunk(9));
+
+		List<RetrievedChunk> fused = RagService.fuseRankings(List.of(List.of(), lexical), 60, 2);
+
+		assertThat(fused).extracting(RetrievedChunk::getId).containsExactly(7L, 8L);
+	}
+
+	@Test
+	void relevanceFilterAppliesThresholdAndScoreDrop() {
+		List<RetrievedChunk> vector = List.of(chunk(1, 0.10), chunk(2, 0.15), chunk(3, 0.25), chunk(4, 0.40), chunk(5, null));
+
+		List<RetrievedChunk> kept = RagService.keepRelevant(vector, 0.7, 0.1);
+
+		// Best similarity is 0.9, so the floor is 0.8
+		assertThat(kept).extracting(RetrievedChunk::getId).containsExactly(1L, 2L, 5L);
+	}
+
+	@Test
+	void relevanceFilterDropsEverythingForOffTopicQueries() {
+		List<RetrievedChunk> vector = List.of(chunk(1, 0.45), chunk(2, 0.5));
+
+		assertThat(RagService.keepRelevant(vector, 0.7, 0.1)).isEmpty();
+	}
+
+	@Test
+	void lexicalHitsAreNotHeldToTheSimilarityFloor() {
+		RagChunkRepository repository = mock(RagChunkRepository.class);
+		VectorIndex vectorIndex = mock(VectorIndex.class);
+		Embedding embedding = new Embedding(new float[] {1, 0});
+		List<RetrievedChunk> vectorHits = List.of(chunk(1, 0.05), chunk(2, 0.08));
+		// An exact identifier match the embedding rates far below the best vector hit
+		RetrievedChunk soulSand = chunk(3, 0.6);
+		when(soulSand.getMatchedTerms()).thenReturn(2);
+		when(soulSand.getQueryTerms()).thenReturn(2);
+		List<RetrievedChunk> lexicalHits = List.of(soulSand);
+		when(vectorIndex.search(embedding, null, 20, 0.7)).thenReturn(vectorHits);
+		when(repository.findByFullText("soul sand", null, 20)).thenReturn(lexicalHits);
+
+		RagService ragService = hybridRagService(repository, vectorIndex);
+
+		List<RetrievedChunk> chunks = ragService.retrieveRelevantChunks("soul sand", embedding, 5);
+
+		assertThat(chunks).extracting(RetrievedChunk::getId).containsExactly(1L, 3L, 2L);
+	}
+
+	@Test
+	void slowFullTextSearchFallsBackToVectorHits() {
+		RagChunkRepository repository = mock(RagChunkRepository.class);
+		VectorIndex vectorIndex = mock(VectorIndex.class);
+		Embedding embedding = new Embedding(new float[] {1, 0});
+		List<RetrievedChunk> vectorHits = List.of(chunk(1, 0.05), chunk(2, 0.08));
+		when(vectorIndex.search(embedding, null, 20, 0.7)).thenReturn(vectorHits);
+		when(repository.findByFullText("soul sand", null, 20)).thenAnswer(invocation -> {
+			Thread.sleep(5000);
+			return List.of(chunk(3));
+		});
+		Scheduler scheduler = Schedulers.newBoundedElastic(1, 10, "test-full-text");
+
+		try {
+			RagService ragService = new RagService(repository, mock(EmbeddingService.class), vectorIndex,
+				mock(ContextAssembler.class), scheduler);
+			ReflectionTestUtils.setField(ragService, "ragEnabled", true);
+			ReflectionTestUtils.setField(ragService, "hybridEnabled", true);
+			ReflectionTestUtils.setField(ragService, "hybridCandidates", 20);
+			ReflectionTestUtils.setField(ragService, "rrfK", 60);
+			ReflectionTestUtils.setField(ragService, "fullTextTimeout", Duration.ofMillis(100));
+			ReflectionTestUtils.setField(ragService, "similarityThreshold", 0.7);
+			ReflectionTestUtils.setField(ragService, "maxScoreDrop", 0.1);
+
+			long start = System.nanoTime();
+			List<RetrievedChunk> chunks = ragService.retrieveRelevantChunks("soul sand", embedding, 5);
+
+			assertThat(chunks).extracting(RetrievedChunk::getId).containsExactly(1L, 2L);
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+		} finally {
+			scheduler.dispose();
+		}
+	}
+
+	@Test
+	void offTopicQuestionGetsNoContextInHybridMode() {
+		RagChunkRepository repository = mock(RagChunkRepository.class);
+		VectorIndex vectorIndex = mock(VectorIndex.class);
+		Embedding embedding = new Embedding(new float[] {1, 0});
+		List<RetrievedChunk> vectorHits = List.of(chunk(1, 0.45), chunk(2, 0.5));
+		// "What is the capital of France?" shares only "capital" with a few chunks
+		List<RetrievedChunk> lexicalHits = List.of(chunk(3, 1, 2), chunk(4, 1, 2));
+		when(vectorIndex.search(embedding, null, 20, 0.7)).thenReturn(vectorHits);
+		when(repository.findByFullText("What is the capital of France?", null, 20)).thenReturn(lexicalHits);
+		RagService ragService = hybridRagService(repository, vectorIndex);
+
+		List<RetrievedChunk> chunks = ragService.retrieveRelevantChunks("What is the capital of France?", embedding, 5);
+
+		assertThat(chunks).isEmpty();
+		assertThat(ragService.buildContextString(chunks)).isEmpty();
+	}
+
+	@Test
+	void fullTextHitsNeedMinMatchedTermsOrAllOfAShortQuery() {
+		List<RetrievedChunk> lexical = List.of(chunk(1, 2, 6), chunk(2, 1, 6), chunk(3, 1, 1), chunk(4, null, null));
+
+		List<RetrievedChunk> kept = RagService.keepMatching(lexical, 2);
+
+		assertThat(kept).extracting(RetrievedChunk::getId).containsExactly(1L, 3L, 4L);
+	}
+
+	@Test
+	void failedStartupCountIsNotRetriedOnTheChatPath() {
+		RagChunkRepository repository = mock(RagChunkRepository.class);
+		when(repository.count()).thenThrow(new IllegalStateException("database not ready"));
+		RagService ragService = new RagService(repository, mock(EmbeddingService.class), mock(VectorIndex.class),
+			mock(ContextAssembler.class), Schedulers.immediate());
+		ReflectionTestUtils.setField(ragService, "ragEnabled", true);
+
+		ragService.onApplicationReady();
+		for (int i = 0; i < 10; i++) {
+			assertThat(ragService.isRagAvailable()).isFalse();
+		}
+		assertThat(ragService.getStats()).isEmpty();
+		verify(repository, times(1)).count();
+
+		reset(repository);
+		when(repository.count()).thenReturn(12L);
+		when(repository.countByEmbeddingIsNotNull()).thenReturn(10L);
+		ragService.retryUnknownCorpusSnapshot();
+
+		assertThat(ragService.isRagAvailable()).isTrue();
+		assertThat(ragService.getStats()).hasValueSatisfying(stats -> assertThat(stats.chunksWithEmbeddings()).isEqualTo(10));
+	}
+
+	private static RetrievedChunk chunk(long id) {
+		return chunk(id, null);
+	}
+
+	private static RetrievedChunk chunk(long id, Double distance) {
+		RetrievedChunk chunk = mock(RetrievedChunk.class);
+		when(chunk.getId()).thenReturn(id);
+		when(chunk.getDistance()).thenReturn(distance);
+		when(chunk.getSimilarity()).thenCallRealMethod();
+		when(chunk.getMatchedTerms()).thenReturn(null);
+		when(chunk.getQueryTerms()).thenReturn(null);
+		return chunk;
+	}
+
+	/**
+	 * Full-text hit containing matchedTerms of the query's queryTerms
+	 */
+	private static RetrievedChunk chunk(long id, Integer matchedTerms, Integer queryTerms) {
+		RetrievedChunk chunk = mock(RetrievedChunk.class);
+		when(chunk.getId()).thenReturn(id);
+		when(chunk.getMatchedTerms()).thenReturn(matchedTerms);
+		when(chunk.getQueryTerms()).thenReturn(queryTerms);
+		return chunk;
+	}
+
+	private static RagService hybridRagService(RagChunkRepository repository, VectorIndex vectorIndex) {
+		RagService ragService = new RagService(repository, mock(EmbeddingService.class), vectorIndex,
+			mock(ContextAssembler.class), Schedulers.immediate());
+		ReflectionTestUtils.setField(ragService, "ragEnabled", true);
+		ReflectionTestUtils.setField(ragService, "hybridEnabled", true);
+		ReflectionTestUtils.setField(ragService, "hybridCandidates", 20);
+		ReflectionTestUtils.setField(ragService, "rrfK", 60);
+		ReflectionTestUtils.setField(ragService, "minMatchedTerms", 2);
+		ReflectionTestUtils.setField(ragService, "fullTextTimeout", Duration.ofSeconds(2));
+		ReflectionTestUtils.setField(ragService, "similarityThreshold", 0.7);
+		ReflectionTestUtils.setField(ragService, "maxScoreDrop", 0.1);
+		return ragService;
+	}
+}
@@ -0,0 +1,152 @@
+package com.example.chatbotmc.service;
+
+import com.example.chatbotmc.config.AuthenticatedUser;
+import com.example.chatbotmc.controller.LlmController;
+import com.example.chatbotmc.dto.ChatRequest;
+import com.example.chatbotmc.dto.ChatResponse;
+import com.example.chatbotmc.llm.gemini.GeminiCallPolicy;
+import com.example.chatbotmc.llm.gemini.GeminiLlmClient;
+import com.example.chatbotmc.util.CircuitBreaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Throughput of blocking /api/llm/chat calls on platform threads (a pool the size of Tomcat's
+ * default 200 request threads) versus one virtual thread per chat, against a local Gemini stub
+ * with fixed latency. Persistence is mocked, so the LLM wait dominates as it does in production.
+ *
+ * The controller method is called directly on the executor's threads, standing in for Tomcat's
+ * request threads; booting the full HTTP stack would need a database. The stub is a Reactor Netty
+ * server that delays each response without holding a thread, so it serves all chats at once.
+ * With the executor no longer the limit, virtual threads run into CPU: client, stub and JSON
+ * handling all share the test machine's cores.
+ *
+ * Opt-in: mvn test -Dtest=VirtualThreadChatBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadChatBenchmarkTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(VirtualThreadChatBenchmarkTest.class);
+
+	private static final int CONCURRENT_CHATS = 2000;
+	private static final int PLATFORM_THREADS = 200;
+	private static final long GEMINI_LATENCY_MILLIS = 1000;
+
+	private static final String GEMINI_RESPONSE =
+		"{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Feed it fish.\"}]}}]}";
+
+	private static final AuthenticatedUser USER = new AuthenticatedUser(ConversationFixtures.USER_ID, "steve", "USER");
+
+	private DisposableServer geminiStub;
+	private ConnectionProvider connectionProvider;
+	private LlmController llmController;
+
+	@BeforeEach
+	void setUp() {
+		geminiStub = HttpServer.create()
+			.host("127.0.0.1")
+			.port(0)
+			.handle((request, response) -> request.receive().then()
+				.then(Mono.delay(Duration.ofMillis(GEMINI_LATENCY_MILLIS)))
+				.then(response.header("Content-Type", "application/json")
+					.sendString(Mono.just(GEMINI_RESPONSE))
+					.then()))
+			.bindNow();
+
+		// Enough connections that the HTTP client pool is not what is being measured
+		connectionProvider = ConnectionProvider.builder("gemini-stub")
+			.maxConnections(CONCURRENT_CHATS)
+			.pendingAcquireMaxCount(-1)
+			.build();
+		WebClient webClient = WebClient.builder()
+			.baseUrl("http://127.0.0.1:" + geminiStub.port() + "/")
+			.clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+			.build();
+
+		// Bulkhead as wide as the load, so every chat reaches the stub
+		GeminiCallPolicy callPolicy = new GeminiCallPolicy("generation", Duration.ofSeconds(30), CONCURRENT_CHATS,
+			new CircuitBreaker(50, 20, 10, Duration.ofSeconds(30), 3), 0, Duration.ofMillis(500), Duration.ofSeconds(5));
+
+		// RAG and the answer cache are off: every chat is one generateContent call
+		// Conversation memory off as well: the mocked history would only add a no-op read
+		GeminiLlmClient llmClient = new GeminiLlmClient(webClient, "test-key", callPolicy);
+		ConversationService conversationService = ConversationFixtures.conversationService();
+		ConversationMemoryService memory = new ConversationMemoryService(conversationService, llmClient,
+			Schedulers.immediate(), false, 4, 1000, 300, 20);
+		LlmService llmService = new LlmService(llmClient, conversationService, mock(RagService.class),
+			mock(EmbeddingService.class), new SemanticAnswerCache(false, 0.95, 1, 1), memory);
+		llmController = new LlmController(llmService, mock(UserService.class));
+	}
+
+	@AfterEach
+	void tearDown() {
+		geminiStub.disposeNow();
+		connectionProvider.dispose();
+	}
+
+	@Test
+	void virtualThreadsVersusPlatformThreads() throws Exception {
+		// Warm up connections and JIT before measuring
+		runChats(Executors.newVirtualThreadPerTaskExecutor(), CONCURRENT_CHATS);
+
+		double platform = runChats(Executors.newFixedThreadPool(PLATFORM_THREADS), CONCURRENT_CHATS);
+		double virtual = runChats(Executors.newVirtualThreadPerTaskExecutor(), CONCURRENT_CHATS);
+
+		// Ceilings if the Gemini latency were the only cost: threads / latency, or every chat at once
+		double platformCeiling = PLATFORM_THREADS * 1000.0 / GEMINI_LATENCY_MILLIS;
+		double virtualCeiling = CONCURRENT_CHATS * 1000.0 / GEMINI_LATENCY_MILLIS;
+		logger.info("{} chats, {} ms Gemini latency, {} CPUs: {} platform threads {} chats/s (ceiling {}), "
+				+ "virtual threads {} chats/s (ceiling {})",
+			CONCURRENT_CHATS, GEMINI_LATENCY_MILLIS, Runtime.getRuntime().availableProcessors(), PLATFORM_THREADS,
+			Math.round(platform), Math.round(platformCeiling), Math.round(virtual), Math.round(virtualCeiling));
+		// The platform pool can never beat its thread count; virtual threads must, or the stub or pool is the cap again
+		assertThat(platform).isLessThanOrEqualTo(platformCeiling * 1.05);
+		assertThat(virtual)
+			.as("virtual threads are not capped at %d concurrent chats", PLATFORM_THREADS)
+			.isGreaterThan(platformCeiling);
+	}
+
+	/**
+	 * @return completed chats per second
+	 */
+	private double runChats(ExecutorService executor, int chats) throws Exception {
+		try (executor) {
+			long start = System.nanoTime();
+			List<Future<ResponseEntity<ChatResponse>>> results = new ArrayList<>(chats);
+			for (int i = 0; i < chats; i++) {
+				// Distinct questions, identical ones would be coalesced into a single generate call
+				ChatRequest request = new ChatRequest("How do I tame dragon #" + i + "?", ConversationFixtures.CONVERSATION_ID);
+				results.add(executor.submit(() -> llmController.chat(request, USER)));
+			}
+			for (Future<ResponseEntity<ChatResponse>> result : results) {
+				// Every chat must get the stub's answer, not a fallback from a rejected or failed call
+				assertThat(result.get(60, TimeUnit.SECONDS).getBody().response()).isEqualTo("Feed it fish.");
+			}
+			return chats / ((System.nanoTime() - start) / 1e9);
+		}
+	}
+}
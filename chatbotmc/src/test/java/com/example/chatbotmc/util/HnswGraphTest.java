@@ -0,0 +1,139 @@
+package com.example.chatbotmc.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswGraphTest {
+
+	private static final int DIMENSIONS = 32;
+	private static final int NODES = 1000;
+	private static final int K = 10;
+
+	@Test
+	void recallAgainstBruteForceIsHigh() {
+		Random random = new Random(42);
+		float[][] vectors = randomVectors(random, NODES);
+		HnswGraph graph = build(vectors);
+
+		int queries = 50;
+		int found = 0;
+		for (int q = 0; q < queries; q++) {
+			float[] query = randomVector(random);
+			Set<Integer> expected = bruteForce(vectors, query, K, node -> true);
+			found += (int) graph.search(query, K, 64, node -> true).stream()
+				.filter(hit -> expected.contains(hit.node()))
+				.count();
+		}
+
+		double recall = (double) found / (queries * K);
+		assertThat(recall).as("recall@%d", K).isGreaterThanOrEqualTo(0.9);
+	}
+
+	@Test
+	void deletedNodesAreNeverReturned() {
+		Random random = new Random(7);
+		float[][] vectors = randomVectors(random, NODES);
+		HnswGraph graph = build(vectors);
+		for (int node = 0; node < NODES; node += 3) {
+			graph.markDeleted(node);
+		}
+
+		for (int q = 0; q < 20; q++) {
+			// Query with a deleted node's own vector, its closest match
+			float[] query = vectors[q * 3];
+			List<HnswGraph.Neighbor> hits = graph.search(query, K, 32, node -> true);
+
+			assertThat(hits).hasSize(K);
+			assertThat(hits).allSatisfy(hit -> assertThat(hit.node() % 3).isNotZero());
+		}
+		assertThat(graph.deletedCount()).isEqualTo((NODES + 2) / 3);
+	}
+
+	@Test
+	void selectiveFilterStillReturnsKHits() {
+		Random random = new Random(3);
+		float[][] vectors = randomVectors(random, NODES);
+		HnswGraph graph = build(vectors);
+
+		// Ten of the nodes pass, far fewer than the initial beam would reach
+		float[] query = randomVector(random);
+		IntPredicate filter = node -> node % 100 == 0;
+		List<HnswGraph.Neighbor> hits = graph.search(query, K, 16, filter);
+
+		assertThat(hits).hasSize(K);
+		assertThat(hits).extracting(HnswGraph.Neighbor::node)
+			.containsExactlyInAnyOrderElementsOf(bruteForce(vectors, query, K, filter));
+		assertThat(hits).isSortedAccordingTo(Comparator.comparingDouble(HnswGraph.Neighbor::distance));
+	}
+
+	@Test
+	void emptyGraphAndKLargerThanSize() {
+		HnswGraph empty = new HnswGraph(8, 64, 1);
+		assertThat(empty.search(new float[] {1, 0}, K, 16, node -> true)).isEmpty();
+
+		HnswGraph graph = new HnswGraph(8, 64, 1);
+		graph.add(new float[] {1, 0});
+		graph.add(new float[] {0, 1});
+		graph.add(new float[] {1, 1});
+
+		List<HnswGraph.Neighbor> hits = graph.search(new float[] {1, 0}, K, 16, node -> true);
+
+		assertThat(hits).extracting(HnswGraph.Neighbor::node).containsExactly(0, 2, 1);
+		assertThat(hits.getFirst().distance()).isCloseTo(0f, offset(1e-6f));
+	}
+
+	private static HnswGraph build(float[][] vectors) {
+		HnswGraph graph = new HnswGraph(12, 100, 1);
+		for (float[] vector : vectors) {
+			graph.add(vector);
+		}
+		return graph;
+	}
+
+	private static Set<Integer> bruteForce(float[][] vectors, float[] query, int k, IntPredicate filter) {
+		return IntStream.range(0, vectors.length)
+			.filter(filter)
+			.boxed()
+			.sorted(Comparator.comparingDouble(node -> -cosine(vectors[node], query)))
+			.limit(k)
+			.collect(Collectors.toSet());
+	}
+
+	private static double cosine(float[] a, float[] b) {
+		double dot = 0;
+		double normA = 0;
+		double normB = 0;
+		for (int i = 0; i < a.length; i++) {
+			dot += a[i] * b[i];
+			normA += a[i] * a[i];
+			normB += b[i] * b[i];
+		}
+		return dot / Math.sqrt(normA * normB);
+	}
+
+	private static float[][] randomVectors(Random random, int count) {
+		float[][] vectors = new float[count][];
+		for (int i = 0; i < count; i++) {
+			vectors[i] = randomVector(random);
+		}
+		return vectors;
+	}
+
+	private static float[] randomVector(Random random) {
+		float[] vector = new float[DIMENSIONS];
+		for (int i = 0; i < DIMENSIONS; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return vector;
+	}
+}
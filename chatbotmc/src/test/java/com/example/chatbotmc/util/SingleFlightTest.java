@@ -0,0 +1,83 @@
+package com.example.chatbotmc.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+	private static final int CALLERS = 50;
+
+	@Test
+	void concurrentCallersShareOneCall() throws Exception {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		AtomicInteger upstreamCalls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < CALLERS; i++) {
+				results.add(executor.submit(() -> flights.execute("how to hatch an egg", () -> {
+					upstreamCalls.incrementAndGet();
+					await(release);
+					return "Place it on a bed of ice.";
+				})));
+			}
+
+			// Let every caller arrive while the first call is still in flight
+			while (flights.stats().collapsed() < CALLERS - 1) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			for (Future<String> result : results) {
+				assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("Place it on a bed of ice.");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(upstreamCalls).hasValue(1);
+		assertThat(flights.stats().collapsed()).isEqualTo(CALLERS - 1);
+		assertThat(flights.stats().inFlight()).isZero();
+	}
+
+	@Test
+	void failureReachesEveryWaiterAndReleasesTheKey() {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		Sinks.One<String> upstream = Sinks.one();
+
+		Mono<String> first = flights.executeAsync("egg", upstream::asMono);
+		Mono<String> second = flights.executeAsync("egg", () -> Mono.just("unused"));
+		first.subscribe(value -> {}, error -> {});
+		Mono<String> secondResult = second.cache();
+		secondResult.subscribe(value -> {}, error -> {});
+
+		upstream.tryEmitError(new IllegalStateException("Gemini unavailable"));
+
+		assertThatThrownBy(secondResult::block).hasMessageContaining("Gemini unavailable");
+		assertThat(flights.stats().collapsed()).isEqualTo(1);
+		assertThat(flights.execute("egg", () -> "fresh")).isEqualTo("fresh");
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}